@@ -108,6 +108,18 @@ public class AppEntry extends Application {
 
         // 基础配置
         config.portProperty().addListener(o -> ConfigStore.save());
+        config.transportProperty().addListener(o -> ConfigStore.save());
+        config.tuningPresetProperty().addListener(o -> ConfigStore.save());
+        config.workerThreadsProperty().addListener(o -> ConfigStore.save());
+        config.sendBufferKbProperty().addListener(o -> ConfigStore.save());
+        config.receiveBufferKbProperty().addListener(o -> ConfigStore.save());
+        config.writeBufferLowKbProperty().addListener(o -> ConfigStore.save());
+        config.writeBufferHighKbProperty().addListener(o -> ConfigStore.save());
+        config.backlogProperty().addListener(o -> ConfigStore.save());
+        config.pooledAllocatorProperty().addListener(o -> ConfigStore.save());
+        config.tcpNoDelayProperty().addListener(o -> ConfigStore.save());
+        config.ioThreadsProperty().addListener(o -> ConfigStore.save());
+        config.virtualIoThreadsProperty().addListener(o -> ConfigStore.save());
         config.rootPathProperty().addListener(o -> ConfigStore.save());
         config.allowUploadProperty().addListener(o -> ConfigStore.save());
         config.remotePinProperty().addListener(o -> ConfigStore.save());
@@ -0,0 +1,121 @@
+package com.vc6.core;
+
+import com.vc6.model.AppConfig;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 阻塞文件 I/O 专用执行器
+ * 目录列举、删除、上传落盘等阻塞操作由业务处理器在 I/O 线程上分流后交到这里，不再占用 Netty 的 I/O 线程；
+ * 每个连接固定绑定其中一个执行器，请求顺序不变。队列有上限，满了直接拒绝。
+ */
+public class BlockingIoExecutor {
+
+    // 单个执行器的硬上限，超出后任务被拒绝
+    private static final int MAX_PENDING_PER_EXECUTOR = 1024;
+    // 超过该深度时新请求直接返回 503，给已经在处理中的请求 (如上传分片) 留出余量
+    private static final int ADMISSION_LIMIT = 256;
+    private static final AttributeKey<EventExecutor> EXECUTOR_KEY = AttributeKey.valueOf("IO_EXECUTOR");
+
+    private final EventExecutorGroup group;
+    private final int threads;
+    private final boolean virtual;
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger peakPending = new AtomicInteger();
+
+    public BlockingIoExecutor(AppConfig config) {
+        this.virtual = config.isVirtualIoThreads();
+        int configured = config.getIoThreads();
+        if (configured > 0) {
+            this.threads = configured;
+        } else {
+            // 虚拟线程阻塞时不占用载体线程，可以开得更多
+            int cpus = Runtime.getRuntime().availableProcessors();
+            this.threads = virtual ? Math.max(64, cpus * 8) : Math.max(8, cpus * 2);
+        }
+        ThreadFactory factory = virtual
+                ? Thread.ofVirtual().name("lan-io-", 0).factory()
+                : new DefaultThreadFactory("lan-io", true);
+        RejectedExecutionHandler onReject = (task, executor) -> {
+            rejected.increment();
+            throw new RejectedExecutionException("I/O queue full");
+        };
+        this.group = new DefaultEventExecutorGroup(threads, factory, MAX_PENDING_PER_EXECUTOR, onReject);
+    }
+
+    public EventExecutorGroup group() { return group; }
+    public int getThreads() { return threads; }
+    public boolean isVirtual() { return virtual; }
+
+    /**
+     * 连接绑定的执行器，首次使用时选定，此后不变
+     */
+    public EventExecutor executorOf(Channel channel) {
+        EventExecutor bound = channel.attr(EXECUTOR_KEY).get();
+        if (bound == null) {
+            EventExecutor picked = group.next();
+            bound = channel.attr(EXECUTOR_KEY).setIfAbsent(picked);
+            if (bound == null) bound = picked;
+        }
+        return bound;
+    }
+
+    /**
+     * 把任务交给连接绑定的执行器，同一连接的任务按提交顺序执行；队列已满时返回 false (已计入拒绝数)
+     */
+    public boolean execute(Channel channel, Runnable task) {
+        try {
+            executorOf(channel).execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 新请求准入检查：所属执行器积压过多时返回 false
+     */
+    public boolean tryAdmit(EventExecutor executor) {
+        if (pendingTasks(executor) <= ADMISSION_LIMIT) return true;
+        rejected.increment();
+        return false;
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * 所有执行器当前排队的任务总数 (同时刷新峰值)
+     */
+    public int getPendingTasks() {
+        int total = 0;
+        for (EventExecutor e : group) {
+            total += pendingTasks(e);
+        }
+        peakPending.accumulateAndGet(total, Math::max);
+        return total;
+    }
+
+    public int getPeakPending() { return peakPending.get(); }
+    public long getRejectedCount() { return rejected.sum(); }
+
+    public void shutdown() {
+        group.shutdownGracefully();
+    }
+
+    public static int pendingTasks(EventExecutor executor) {
+        return executor instanceof SingleThreadEventExecutor s ? s.pendingTasks() : 0;
+    }
+}
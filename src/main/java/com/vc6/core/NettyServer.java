@@ -1,37 +1,73 @@
 package com.vc6.core;
 
 
+import com.vc6.core.handler.AdmissionGuardHandler;
 import com.vc6.core.handler.HttpRequestHandler;
+import com.vc6.core.handler.ResumableUploadHandler;
+import com.vc6.core.handler.UploadStreamHandler;
+import com.vc6.core.service.QuickShareIndex;
+import com.vc6.core.service.ResumableUploadService;
+import com.vc6.core.service.StaticAssetCache;
 import com.vc6.gui.component.LogPanel;
 import com.vc6.model.AppConfig;
 import com.vc6.model.ServerMode;
+import com.vc6.model.TuningPreset;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import io.netty.util.AsciiString;
 import javafx.application.Platform;
 
+import java.util.concurrent.TimeUnit;
+
 public class NettyServer {
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
     private ChannelFuture channelFuture;
 
+    private static final int STALL_TIMEOUT_SECONDS = 120;
+    // h2c 升级请求 (GET/HEAD) 不带请求体，只需很小的聚合上限
+    private static final int UPGRADE_MAX_CONTENT = 16 * 1024;
+
     private static NettyServer instance;
     private static GlobalTrafficShapingHandler trafficHandler;
+    private static BlockingIoExecutor ioExecutor;
 
     // Getter 保持不变 (注意判空)
     public static GlobalTrafficShapingHandler getTrafficHandler() {
         return trafficHandler;
     }
 
+    public static BlockingIoExecutor getIoExecutor() {
+        return ioExecutor;
+    }
+
     public static synchronized NettyServer getInstance() {
         if (instance == null) {
             instance = new NettyServer();
@@ -61,27 +97,62 @@ public class NettyServer {
             // 1. 防止 UI 状态不一致，先重置为停止
             updateStatus(ServerMode.STOPPED);
 
-            bossGroup = new NioEventLoopGroup(1);
-            workerGroup = new NioEventLoopGroup();
+            ServerTransport configured = ServerTransport.fromKey(AppConfig.getInstance().getTransport());
+            ServerTransport transport = configured.resolve();
+            if (configured != ServerTransport.AUTO && transport != configured) {
+                LogPanel.log("[System] 传输层 " + configured.getKey() + " 在当前系统不可用，已回退为 " + transport.getKey());
+            }
+            LogPanel.log("[System] 网络传输层: " + transport.getDescription());
+
+            AppConfig config = AppConfig.getInstance();
+            StaticAssetCache.getInstance().preload();
+            bossGroup = transport.newEventLoopGroup(1);
+            workerGroup = transport.newEventLoopGroup(config.getWorkerThreads());
             trafficHandler = new GlobalTrafficShapingHandler(new java.util.concurrent.ScheduledThreadPoolExecutor(1), 1000);
+            ioExecutor = new BlockingIoExecutor(config);
+            LogPanel.log("[System] 文件 I/O 线程: " + ioExecutor.getThreads() + (ioExecutor.isVirtual() ? " (虚拟线程)" : ""));
             try {
                 ServerBootstrap b = new ServerBootstrap();
                 b.group(bossGroup, workerGroup)
-                        .channel(NioServerSocketChannel.class)
+                        .channel(transport.serverChannelClass())
                         .childHandler(new ChannelInitializer<SocketChannel>() {
                             @Override
                             protected void initChannel(SocketChannel ch) {
                                 if (trafficHandler != null) ch.pipeline().addLast(trafficHandler);
-                                ch.pipeline().addLast(new HttpServerCodec());
-                                long maxMb = AppConfig.getInstance().getMaxFileSizeMb();
-                                int maxBytes = (int) Math.min(maxMb * 1024 * 1024, Integer.MAX_VALUE);
-                                ch.pipeline().addLast(new HttpObjectAggregator(maxBytes));
-                                ch.pipeline().addLast(new ChunkedWriteHandler());
-                                ch.pipeline().addLast(new HttpRequestHandler());
+                                // 读写双向都没有进展 (含出站缓冲停滞) 超过时限即断开，回收卡住的下载
+                                ch.pipeline().addLast(new IdleStateHandler(true, 0, 0, STALL_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+                                // h2c：识别 HTTP/2 前言 (prior knowledge) 或 Upgrade: h2c，否则按 HTTP/1.1 处理
+                                HttpServerCodec sourceCodec = new HttpServerCodec();
+                                HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec,
+                                        protocol -> AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                                                ? new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(), newStreamMultiplexer())
+                                                : null,
+                                        UPGRADE_MAX_CONTENT) {
+                                    @Override
+                                    protected boolean shouldHandleUpgradeRequest(HttpRequest req) {
+                                        // 带请求体的升级请求 (如上传) 不升级，避免被整个缓存进内存
+                                        return !HttpUtil.isTransferEncodingChunked(req) && HttpUtil.getContentLength(req, 0L) == 0
+                                                && super.shouldHandleUpgradeRequest(req);
+                                    }
+                                };
+                                ch.pipeline().addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler,
+                                        new ChannelInitializer<Channel>() {
+                                            @Override
+                                            protected void initChannel(Channel c) {
+                                                c.pipeline().addLast(Http2FrameCodecBuilder.forServer().build(), newStreamMultiplexer());
+                                            }
+                                        }));
+                                // 按请求的 Connection 头决定是否复用连接；请求按顺序处理，流水线请求的响应也按顺序写回
+                                ch.pipeline().addLast(new HttpServerKeepAliveHandler());
+                                addRequestHandlers(ch.pipeline());
                             }
                         });
+                applyTuning(b, config);
 
                 LogPanel.log("[System] 正在启动模式: " + mode.getDescription() + " ...");
+                // 启动时建好快传索引并开始监听目录，推送不必等到首次访问
+                if (mode == ServerMode.QUICK_SHARE) QuickShareIndex.getInstance().load();
 
                 int currentPort = AppConfig.getInstance().getPort();
 
@@ -125,6 +196,74 @@ public class NettyServer {
     private void stopResources() {
         if (bossGroup != null) bossGroup.shutdownGracefully();
         if (workerGroup != null) workerGroup.shutdownGracefully();
+        if (ioExecutor != null) ioExecutor.shutdown();
+        ResumableUploadService.getInstance().abortAll();
+    }
+
+    /**
+     * HTTP/1.1 连接与 HTTP/2 每个流共用的业务处理链
+     */
+    private static void addRequestHandlers(ChannelPipeline p) {
+        BlockingIoExecutor io = ioExecutor;
+        p.addLast(new AdmissionGuardHandler(io));
+        // 文件上传 (multipart 与分块续传) 在聚合器之前被流式接管，边收边落盘
+        // 处理器都留在 I/O 线程上分流，上传落盘与业务处理由它们自己交给 io 执行器
+        p.addLast("upload", new UploadStreamHandler(io));
+        p.addLast("resumable", new ResumableUploadHandler(io));
+        p.addLast(new HttpObjectAggregator(maxFormBytes()));
+        p.addLast(new ChunkedWriteHandler());
+        p.addLast("handler", new HttpRequestHandler(io));
+    }
+
+    /**
+     * HTTP/2 每个流是一个子 Channel：帧转换为 HttpObject 后复用 HTTP/1.1 的处理链，路由逻辑无需改动
+     */
+    private static Http2MultiplexHandler newStreamMultiplexer() {
+        return new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+            @Override
+            protected void initChannel(Http2StreamChannel ch) {
+                ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                addRequestHandlers(ch.pipeline());
+            }
+        });
+    }
+
+    /**
+     * 按配置设置 Socket 与内存分配参数 (缓冲区为 0 时交给操作系统决定)
+     */
+    private static void applyTuning(ServerBootstrap b, AppConfig config) {
+        ByteBufAllocator allocator = config.isPooledAllocator() ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+        int low = Math.max(1, config.getWriteBufferLowKb()) * 1024;
+        int high = Math.max(low, config.getWriteBufferHighKb() * 1024);
+
+        b.option(ChannelOption.SO_BACKLOG, Math.max(1, config.getBacklog()))
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(low, high));
+        if (config.getSendBufferKb() > 0) {
+            b.childOption(ChannelOption.SO_SNDBUF, config.getSendBufferKb() * 1024);
+        }
+        if (config.getReceiveBufferKb() > 0) {
+            // 接收窗口需要在 accept 之前设置在监听 Socket 上才能参与窗口缩放协商
+            b.option(ChannelOption.SO_RCVBUF, config.getReceiveBufferKb() * 1024);
+            b.childOption(ChannelOption.SO_RCVBUF, config.getReceiveBufferKb() * 1024);
+        }
+
+        LogPanel.log("[System] 性能参数: 预设=" + TuningPreset.fromKey(config.getTuningPreset()).getDescription()
+                + ", 工作线程=" + (config.getWorkerThreads() > 0 ? config.getWorkerThreads() : "自动")
+                + ", 写水位=" + low / 1024 + "/" + high / 1024 + "KB"
+                + ", backlog=" + config.getBacklog()
+                + ", 内存池=" + (config.isPooledAllocator() ? "开" : "关"));
+    }
+
+    /**
+     * 聚合器只服务于登录、文本消息等小表单
+     * 文本按 URL 编码计算 (中文每字最多 9 字节)，至少保留 1MB
+     */
+    private static int maxFormBytes() {
+        long textBytes = AppConfig.getInstance().getMaxTextLength() * 9L + 4096;
+        return (int) Math.min(Math.max(textBytes, 1024 * 1024), Integer.MAX_VALUE);
     }
 
     // 辅助方法：在 JavaFX 线程更新状态
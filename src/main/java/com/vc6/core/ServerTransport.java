@@ -0,0 +1,89 @@
+package com.vc6.core;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+
+/**
+ * Netty 传输层选择
+ * AUTO 在 Linux 上优先使用原生 epoll，不可用时回退 NIO；io_uring 需要显式指定
+ */
+public enum ServerTransport {
+    AUTO("auto", "自动选择"),
+    NIO("nio", "NIO (跨平台)"),
+    EPOLL("epoll", "Epoll (Linux 原生)"),
+    IO_URING("io_uring", "io_uring (Linux 5.10+)");
+
+    private final String key;
+    private final String description;
+
+    ServerTransport(String key, String description) {
+        this.key = key;
+        this.description = description;
+    }
+
+    public String getKey() { return key; }
+    public String getDescription() { return description; }
+
+    public static ServerTransport fromKey(String key) {
+        for (ServerTransport t : values()) {
+            if (t.key.equalsIgnoreCase(key)) return t;
+        }
+        return AUTO;
+    }
+
+    /**
+     * 检查原生库是否可以加载 (非 Linux 平台或缺少 .so 时返回 false)
+     */
+    public boolean isAvailable() {
+        try {
+            return switch (this) {
+                case AUTO, NIO -> true;
+                case EPOLL -> Epoll.isAvailable();
+                case IO_URING -> IoUring.isAvailable();
+            };
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * 把配置值解析为实际可用的传输层
+     */
+    public ServerTransport resolve() {
+        if (this == AUTO) return EPOLL.isAvailable() ? EPOLL : NIO;
+        return isAvailable() ? this : NIO;
+    }
+
+    /**
+     * @param threads 0 表示使用 Netty 默认线程数 (CPU 核数 * 2)
+     */
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return new MultiThreadIoEventLoopGroup(threads, ioHandlerFactory());
+    }
+
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return switch (resolve()) {
+            case EPOLL -> EpollServerSocketChannel.class;
+            case IO_URING -> IoUringServerSocketChannel.class;
+            default -> NioServerSocketChannel.class;
+        };
+    }
+
+    private IoHandlerFactory ioHandlerFactory() {
+        return switch (resolve()) {
+            case EPOLL -> EpollIoHandler.newFactory();
+            case IO_URING -> IoUringIoHandler.newFactory();
+            default -> NioIoHandler.newFactory();
+        };
+    }
+}
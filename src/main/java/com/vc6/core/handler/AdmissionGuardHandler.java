@@ -0,0 +1,86 @@
+package com.vc6.core.handler;
+
+import com.vc6.core.BlockingIoExecutor;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 准入控制 (运行在 I/O 线程)
+ * 在请求交给阻塞 I/O 执行器之前检查队列深度：积压过多时直接回 503，不再继续排队；
+ * 请求体分片则通过暂停读取形成背压。
+ */
+public class AdmissionGuardHandler extends ChannelInboundHandlerAdapter {
+
+    // 下游执行器积压超过该值时暂停读取
+    private static final int PAUSE_PENDING = 64;
+
+    private final BlockingIoExecutor ioExecutor;
+    private boolean dropping; // 当前请求已被拒绝，丢弃其余请求体
+
+    public AdmissionGuardHandler(BlockingIoExecutor ioExecutor) {
+        this.ioExecutor = ioExecutor;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest) {
+            dropping = false;
+            if (!ioExecutor.tryAdmit(ioExecutor.executorOf(ctx.channel()))) {
+                reject(ctx, msg);
+                return;
+            }
+        } else if (dropping) {
+            if (msg instanceof LastHttpContent) dropping = false;
+            ReferenceCountUtil.release(msg);
+            return;
+        } else {
+            throttle(ctx);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * 请求体分片 (上传) 的产生速度可能远超磁盘写入：积压超过阈值时暂停从 Socket 读取，
+     * 并在下游执行器队尾放一个恢复任务，执行到它时说明之前的分片都已处理完
+     */
+    private void throttle(ChannelHandlerContext ctx) {
+        ChannelConfig config = ctx.channel().config();
+        EventExecutor downstream = ioExecutor.executorOf(ctx.channel());
+        if (config.isAutoRead() && BlockingIoExecutor.pendingTasks(downstream) > PAUSE_PENDING) {
+            config.setAutoRead(false);
+            try {
+                downstream.execute(() -> config.setAutoRead(true));
+            } catch (RejectedExecutionException e) {
+                config.setAutoRead(true); // 恢复任务都排不进去时不能让连接永远停住
+            }
+        }
+    }
+
+    private void reject(ChannelHandlerContext ctx, Object msg) {
+        dropping = !(msg instanceof LastHttpContent);
+        ReferenceCountUtil.release(msg);
+        sendBusy(ctx);
+    }
+
+    /**
+     * 503 并关闭连接 (请求体还没读完，连接不能复用)；业务处理器交任务被执行器拒绝时也用它
+     */
+    static void sendBusy(ChannelHandlerContext ctx) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.SERVICE_UNAVAILABLE,
+                Unpooled.copiedBuffer("Error: 503 Server Busy\r\n", CharsetUtil.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8");
+        response.headers().set(HttpHeaderNames.RETRY_AFTER, 2);
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        HttpUtil.setKeepAlive(response, false);
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+}
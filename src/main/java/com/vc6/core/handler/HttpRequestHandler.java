@@ -1,5 +1,6 @@
 package com.vc6.core.handler;
 
+import com.vc6.core.BlockingIoExecutor;
 import com.vc6.core.service.AuthService;
 import com.vc6.core.service.FileService;
 import com.vc6.core.service.HtmlGenerator;
@@ -8,7 +9,7 @@ import com.vc6.gui.component.LogPanel;
 import com.vc6.model.AppConfig;
 import com.vc6.model.ServerMode;
 import com.vc6.model.UserSession;
-import io.netty.channel.ChannelFutureListener;
+import com.vc6.model.UserTraffic;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
@@ -16,23 +17,52 @@ import io.netty.handler.codec.http.multipart.Attribute;
 import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
 import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
 import io.netty.handler.codec.http.multipart.InterfaceHttpData;
-import javafx.application.Platform;
+import io.netty.handler.timeout.IdleStateEvent;
 
 import java.io.File;
+import java.util.List;
 
 public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 
+    // 昵称会写进用户日志并显示在会话列表，超出部分截掉
+    private static final int MAX_NICKNAME = 32;
+
+    private final BlockingIoExecutor io;
+    // 只在连接绑定的执行器上使用
     private final FileService fileService = new FileService();
     private final AuthService authService = new AuthService();
 
+    public HttpRequestHandler(BlockingIoExecutor io) {
+        super(false); // 请求交给执行器后由它释放
+        this.io = io;
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) {
+        // 目录列举、下载、删除等都会阻塞磁盘，交给连接绑定的执行器，I/O 线程不等待
+        boolean queued = io.execute(ctx.channel(), () -> {
+            try {
+                handleRequest(ctx, req);
+            } catch (Exception e) {
+                reportError(ctx, e);
+            } finally {
+                req.release();
+            }
+        });
+        if (!queued) {
+            req.release();
+            AdmissionGuardHandler.sendBusy(ctx);
+        }
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, FullHttpRequest req) {
         String rawUri = req.uri();
         String decodedUri = new QueryStringDecoder(rawUri).path();
+        fileService.resetHeaders();
 
         // 1. 静态资源拦截
         if (rawUri.startsWith("/static/")) {
-            fileService.serveStatic(ctx, rawUri);
+            fileService.serveStatic(ctx, req);
             return;
         }
 
@@ -43,32 +73,23 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
 
         // 2. 身份识别：为每个请求分配/识别 UID
 
-        DefaultFullHttpResponse tempResp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
-        UserSession user = authService.identifyUser(ctx, req, tempResp);
+        UserSession user = authService.identifyUser(ctx, req, fileService);
         ctx.channel().attr(AuthService.SESSION_KEY).set(user);
 
-        if (tempResp.headers().contains(HttpHeaderNames.SET_COOKIE)) {
-            String cookie = tempResp.headers().get(HttpHeaderNames.SET_COOKIE);
-            fileService.addHeader(HttpHeaderNames.SET_COOKIE.toString(), cookie);
-        }
-
         // 3. 处理登录请求
         if ("/login".equals(rawUri)) {
             if (req.method() == HttpMethod.POST) {
                 handleLogin(ctx, req);
             } else {
-                fileService.sendHtml(ctx, HtmlGenerator.generateLoginPage(null, user.getNickname()));
+                fileService.sendHtml(ctx, out -> HtmlGenerator.generateLoginPage(out, null, user.getNickname()));
             }
             return;
         }
 
         // 4. 安全拦截逻辑
-        boolean isGlobalAuth = AppConfig.getInstance().isGlobalAuthEnabled();
-        ServerMode mode = AppConfig.getInstance().getServerMode();
-        boolean needsAuth = isGlobalAuth || (mode == ServerMode.REMOTE_DISK);
-        String cookieHeader = req.headers().get(HttpHeaderNames.COOKIE);
+        boolean needsAuth = authService.isAuthRequired();
 
-        if (needsAuth && !authService.isConfiguredAndLoggedIn(cookieHeader, user)) {
+        if (needsAuth && !authService.isConfiguredAndLoggedIn(ctx, user)) {
             LogPanel.log("[Auth] "+getCurrentUserID(ctx)+": 拦截未授权访问: " + decodedUri);
 
             if (user.isValuable()) {
@@ -76,7 +97,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
                 user.setValuable(false);
                 SessionManager.getInstance().removeSession(user);
             }
-            fileService.sendHtml(ctx, HtmlGenerator.generateLoginPage(null, user.getNickname()));
+            fileService.sendHtml(ctx, out -> HtmlGenerator.generateLoginPage(out, null, user.getNickname()));
             return;
         }
 
@@ -105,11 +126,30 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
             if ("/api/text".equals(uri)) {
                 handleTextPost(ctx, req);
             } else {
-                fileService.handleUpload(ctx, req, uri);
+                // multipart 上传已由 UploadStreamHandler 流式处理，能走到这里的都是不支持的请求体
+                fileService.sendError(ctx, HttpResponseStatus.BAD_REQUEST, "Unsupported Upload");
             }
             return;
         }
 
+        if ("/api/list".equals(uri)) {
+            fileService.sendListing(ctx, qsd);
+            return;
+        }
+        if ("/api/feed/events".equals(uri)) {
+            fileService.openFeedStream(ctx);
+            return;
+        }
+        if ("/api/feed/item".equals(uri)) {
+            List<String> name = qsd.parameters().get("name");
+            fileService.sendFeedItem(ctx, name == null ? null : name.getFirst());
+            return;
+        }
+        if (uri.startsWith("/api/text/")) {
+            fileService.sendMessageText(ctx, uri.substring("/api/text/".length()));
+            return;
+        }
+
         //处理 API 指令 (删除)
         if (qsd.parameters().containsKey("action")) {
             if (!AppConfig.getInstance().isAllowUpload()) {
@@ -122,6 +162,19 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
                 return;
             }
 
+            // 快传条目单独设置保留时长 (hours: 0 永不清理，-1 跟随全局)
+            if ("expire".equals(action)) {
+                int hours;
+                try {
+                    hours = Integer.parseInt(qsd.parameters().getOrDefault("hours", List.of("-1")).getFirst());
+                } catch (NumberFormatException e) {
+                    fileService.sendError(ctx, HttpResponseStatus.BAD_REQUEST, "Bad hours");
+                    return;
+                }
+                fileService.handleExpire(ctx, uri, hours);
+                return;
+            }
+
             // 【新增：新建文件夹】
             if ("mkdir".equals(action)) {
                 String name = "";
@@ -143,13 +196,11 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
         //处理特殊根目录
         if ("/".equals(uri)) {
             if (mode == ServerMode.QUICK_SHARE) {
-                File root = fileService.resolveFile("/");
-                if (!root.exists()) root.mkdirs();
-                fileService.sendHtml(ctx, HtmlGenerator.generateQuickSharePage(root, nickname));
+                fileService.sendHtml(ctx, out -> HtmlGenerator.generateQuickSharePage(out, nickname));
                 return;
             }
             if (mode == ServerMode.REMOTE_DISK) {
-                fileService.sendHtml(ctx, HtmlGenerator.generateDriveList(nickname));
+                fileService.sendHtml(ctx, out -> HtmlGenerator.generateDriveList(out, nickname));
                 return;
             }
         }
@@ -163,7 +214,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
         }
 
         if (file.isDirectory()) {
-            fileService.sendHtml(ctx, HtmlGenerator.generateFileList(file, uri, nickname));
+            fileService.sendHtml(ctx, out -> HtmlGenerator.generateFileList(out, uri, nickname));
         } else {
             fileService.downloadFile(ctx, file, req);
         }
@@ -189,21 +240,26 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
             if (authService.verifyPin(inputPin)) {
                 LogPanel.log("[Auth] "+user.getUserId()+": 登录成功 (Device: " + user.getDeviceName() + ")");
                 user.setValuable(true);
+                SessionManager.getInstance().recordActivity(user, UserTraffic.Activity.LOGIN, 0);
                 // 更新昵称
-                if (!inputNickname.isEmpty()) {
-                    final String nick = inputNickname;
-                    Platform.runLater(() -> user.setNickname(nick));
+                String nick = inputNickname.strip();
+                if (nick.codePointCount(0, nick.length()) > MAX_NICKNAME) {
+                    nick = nick.substring(0, nick.offsetByCodePoints(0, MAX_NICKNAME));
+                }
+                if (!nick.isEmpty()) {
+                    user.setNickname(nick);
                 }
                 user.updateLastActive();
 
                 // 下发 Cookie
                 FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.FOUND);
                 resp.headers().set(HttpHeaderNames.LOCATION, "/");
-                resp.headers().add(HttpHeaderNames.SET_COOKIE, authService.createAuthCookie());
+                // 走附加头，排在本次请求可能已下发的访客令牌之后，浏览器以后者为准
+                fileService.addHeader(HttpHeaderNames.SET_COOKIE.toString(), authService.createAuthCookie(user));
 
-                ctx.writeAndFlush(resp).addListener(ChannelFutureListener.CLOSE);
+                fileService.writeResponse(ctx, resp);
             } else {
-                fileService.sendHtml(ctx, HtmlGenerator.generateLoginPage("PIN 码错误", user.getNickname()));
+                fileService.sendHtml(ctx, out -> HtmlGenerator.generateLoginPage(out, "PIN 码错误", user.getNickname()));
                 LogPanel.log("[Auth] "+user.getIp()+": 登录失败 (Device: " + user.getDeviceName() + ")");
 
             }
@@ -237,14 +293,33 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
 
         return user.getUserId();
     }
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            // 连接长时间没有任何进展 (通常是客户端停止读取)，关闭以释放缓冲区和文件句柄
+            LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": 连接停滞，已断开");
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // 错误响应同样在执行器上写出，与正常响应保持顺序
+        if (!io.execute(ctx.channel(), () -> reportError(ctx, cause))) {
+            LogPanel.log("🚨 网络层崩溃: " + cause.toString());
+            ctx.close();
+        }
+    }
+
+    private void reportError(ChannelHandlerContext ctx, Throwable cause) {
         // 【核心】捕获所有未被处理的异常并打印到日志页
         LogPanel.log("🚨 网络层崩溃: " + cause.toString());
         cause.printStackTrace(); // 这行现在会被重定向到日志页显示
 
         if (ctx.channel().isActive()) {
-            fileService.sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, cause.getMessage());
+            fileService.sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, cause.getMessage(), true);
         }
     }
-}
\ No newline at end of file
+}
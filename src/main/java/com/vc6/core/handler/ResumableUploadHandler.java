@@ -0,0 +1,324 @@
+package com.vc6.core.handler;
+
+import com.vc6.core.BlockingIoExecutor;
+import com.vc6.core.service.AuthService;
+import com.vc6.core.service.FileService;
+import com.vc6.core.service.ResumableUploadService;
+import com.vc6.core.service.SessionManager;
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+import com.vc6.model.UserSession;
+import com.vc6.model.UserTraffic;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分块续传接口 (tus 风格)，与 UploadStreamHandler 一样位于聚合器之前，请求体边收边写盘 (写盘在连接绑定的执行器上)
+ * POST   /api/upload        登记上传：Upload-Length 总长度，Upload-Metadata "filename base64,dir base64"；返回 Location
+ * PATCH  /api/upload/{id}   写入一块：Upload-Offset 起始位置，请求体为原始字节；返回 Upload-Offset (从头连续收到的字节数)
+ * HEAD   /api/upload/{id}   查询进度：Upload-Offset / Upload-Length，以及 Upload-Ranges (已收到的全部区间，供并行续传)
+ * DELETE /api/upload/{id}   放弃上传
+ */
+public class ResumableUploadHandler extends ChannelInboundHandlerAdapter {
+
+    private static final String PATH = "/api/upload";
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final String UPLOAD_METADATA = "Upload-Metadata";
+    private static final String UPLOAD_RANGES = "Upload-Ranges";
+
+    private final BlockingIoExecutor io;
+    private final FileService fileService = new FileService();
+    private final AuthService authService = new AuthService();
+    private final ResumableUploadService uploads = ResumableUploadService.getInstance();
+
+    // 只在 I/O 线程访问：当前请求由本处理器接管，直到 LastHttpContent
+    private boolean claimed;
+
+    // 以下状态只在连接绑定的执行器上访问
+    private ResumableUploadService.Upload upload; // 正在接收的 PATCH
+    private long start;
+    private long position;
+    private boolean skipping; // 已经 (或将要) 给出响应，忽略剩余的请求体
+    private boolean discarding; // 请求已被拒绝，丢弃剩余的请求体
+
+    public ResumableUploadHandler(BlockingIoExecutor io) {
+        this.io = io;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest req && isUploadApi(req)) {
+            claimed = true;
+        } else if (!claimed || !(msg instanceof HttpContent)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (msg instanceof LastHttpContent) claimed = false;
+
+        if (!io.execute(ctx.channel(), () -> process(ctx, msg))) {
+            ReferenceCountUtil.release(msg);
+            AdmissionGuardHandler.sendBusy(ctx);
+        }
+    }
+
+    private void process(ChannelHandlerContext ctx, Object msg) {
+        try {
+            if (msg instanceof HttpRequest req) {
+                begin(ctx, req);
+                if (msg instanceof HttpContent content) {
+                    handleContent(ctx, content); // HTTP/2 等场景下请求头可能自带 body
+                }
+            } else if (upload != null || skipping || discarding) {
+                handleContent(ctx, (HttpContent) msg);
+            } else {
+                ReferenceCountUtil.release(msg); // 请求头已因队列满被拒绝，连接正在关闭
+            }
+        } catch (Exception e) {
+            ctx.fireExceptionCaught(e);
+        }
+    }
+
+    private static boolean isUploadApi(HttpRequest req) {
+        String path = new QueryStringDecoder(req.uri()).path();
+        return path.equals(PATH) || path.startsWith(PATH + "/");
+    }
+
+    private void begin(ChannelHandlerContext ctx, HttpRequest req) {
+        reset();
+        fileService.resetHeaders();
+
+        // 1. 身份识别与权限检查 (与 UploadStreamHandler 保持一致)
+        UserSession user = authService.identifyUser(ctx, req, fileService);
+        ctx.channel().attr(AuthService.SESSION_KEY).set(user);
+        if (authService.isAuthRequired() && !authService.isConfiguredAndLoggedIn(ctx, user)) {
+            LogPanel.log("[Auth] " + user.getUserId() + ": 拦截未授权上传: " + req.uri());
+            reject(ctx, HttpResponseStatus.FORBIDDEN, "Login Required");
+            return;
+        }
+        if (!AppConfig.getInstance().isAllowUpload()) {
+            reject(ctx, HttpResponseStatus.FORBIDDEN, "Write Denied");
+            return;
+        }
+
+        // 2. 按方法分发；除 PATCH 外都没有请求体，先行响应
+        String path = new QueryStringDecoder(req.uri()).path();
+        HttpMethod method = req.method();
+        if (path.equals(PATH)) {
+            if (method == HttpMethod.POST) {
+                create(ctx, req, user);
+            } else {
+                reject(ctx, HttpResponseStatus.METHOD_NOT_ALLOWED, "Method Not Allowed");
+            }
+            return;
+        }
+
+        ResumableUploadService.Upload target = uploads.get(path.substring(PATH.length() + 1));
+        // 只有发起者本人能继续或查看，其他人一律当作不存在
+        if (target == null || !target.getOwner().equals(user.getUserId())) {
+            reject(ctx, HttpResponseStatus.NOT_FOUND, "Upload Not Found");
+            return;
+        }
+        if (method == HttpMethod.PATCH) {
+            beginPatch(ctx, req, target);
+        } else if (method == HttpMethod.HEAD) {
+            skipping = true;
+            FullHttpResponse resp = emptyResponse(HttpResponseStatus.OK, target);
+            resp.headers().set(UPLOAD_RANGES, target.getRanges());
+            fileService.writeResponse(ctx, resp);
+        } else if (method == HttpMethod.DELETE) {
+            skipping = true;
+            uploads.abort(target);
+            fileService.writeResponse(ctx, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NO_CONTENT));
+        } else {
+            reject(ctx, HttpResponseStatus.METHOD_NOT_ALLOWED, "Method Not Allowed");
+        }
+    }
+
+    private void create(ChannelHandlerContext ctx, HttpRequest req, UserSession user) {
+        long length;
+        try {
+            length = Long.parseLong(req.headers().get(UPLOAD_LENGTH, ""));
+        } catch (NumberFormatException e) {
+            length = -1;
+        }
+        if (length < 0) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST, "Bad Upload-Length");
+            return;
+        }
+        if (length > AppConfig.getInstance().getMaxFileSizeMb() * 1024L * 1024L) {
+            reject(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, "File Too Large");
+            return;
+        }
+
+        Map<String, String> meta = parseMetadata(req.headers().get(UPLOAD_METADATA));
+        String name = meta.get("filename") == null ? "" : new File(meta.get("filename")).getName();
+        String dirPath = meta.getOrDefault("dir", "/");
+        File dir = dirPath.contains("..") ? null : fileService.resolveFile(dirPath);
+        if (name.isBlank()) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST, "Missing Filename");
+            return;
+        }
+        if (dir == null || !dir.isDirectory()) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST, "Invalid Dir");
+            return;
+        }
+
+        ResumableUploadService.Upload created;
+        try {
+            created = uploads.create(user.getUserId(), dir, name, length);
+        } catch (IllegalStateException e) {
+            reject(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, "Too many pending uploads");
+            return;
+        } catch (IOException e) {
+            LogPanel.log("[Error] " + user.getUserId() + ": 创建上传失败: " + e.getMessage());
+            reject(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Upload Failed");
+            return;
+        }
+        if (created.isComplete()) recordUpload(ctx, created); // 空文件登记即完成
+        skipping = true;
+        FullHttpResponse resp = emptyResponse(HttpResponseStatus.CREATED, created);
+        resp.headers().set(HttpHeaderNames.LOCATION, PATH + "/" + created.getId());
+        fileService.writeResponse(ctx, resp);
+    }
+
+    private void beginPatch(ChannelHandlerContext ctx, HttpRequest req, ResumableUploadService.Upload target) {
+        long offset;
+        try {
+            offset = Long.parseLong(req.headers().get(UPLOAD_OFFSET, ""));
+        } catch (NumberFormatException e) {
+            offset = -1;
+        }
+        long declared = HttpUtil.getContentLength(req, 0L);
+        if (offset < 0 || offset + declared > target.getLength()) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST, "Bad Upload-Offset");
+            return;
+        }
+        if (target.isComplete()) {
+            // 已经收齐 (例如上一次响应丢失后的重试)，直接告知结果
+            skipping = true;
+            fileService.writeResponse(ctx, emptyResponse(HttpResponseStatus.NO_CONTENT, target));
+            return;
+        }
+        if (HttpUtil.is100ContinueExpected(req)) {
+            ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        }
+        upload = target;
+        start = offset;
+        position = offset;
+    }
+
+    private void handleContent(ChannelHandlerContext ctx, HttpContent content) {
+        boolean last = content instanceof LastHttpContent;
+        try {
+            if (discarding || skipping) {
+                if (last) {
+                    discarding = false;
+                    skipping = false;
+                }
+                return;
+            }
+            int n = content.content().readableBytes();
+            if (position + n > upload.getLength()) {
+                reject(ctx, HttpResponseStatus.BAD_REQUEST, "Exceeds Upload-Length");
+                if (last) discarding = false;
+                return;
+            }
+            try {
+                uploads.write(upload, position, content.content());
+                position += n;
+                if (last) finishPatch(ctx);
+            } catch (IOException e) {
+                LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": 分块写入失败: " + e.getMessage());
+                reject(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Write Failed");
+                if (last) discarding = false;
+            }
+        } finally {
+            content.release();
+        }
+    }
+
+    private void finishPatch(ChannelHandlerContext ctx) throws IOException {
+        ResumableUploadService.Upload done = upload;
+        long from = start;
+        long to = position;
+        upload = null;
+        if (uploads.received(done, from, to) != null) recordUpload(ctx, done);
+        fileService.writeResponse(ctx, emptyResponse(HttpResponseStatus.NO_CONTENT, done));
+    }
+
+    private static void recordUpload(ChannelHandlerContext ctx, ResumableUploadService.Upload done) {
+        SessionManager.getInstance().recordActivity(ctx.channel().attr(AuthService.SESSION_KEY).get(),
+                UserTraffic.Activity.UPLOAD, done.getLength());
+    }
+
+    private static FullHttpResponse emptyResponse(HttpResponseStatus status, ResumableUploadService.Upload target) {
+        FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status);
+        resp.headers().set(UPLOAD_OFFSET, target.getOffset());
+        resp.headers().set(UPLOAD_LENGTH, target.getLength());
+        resp.headers().set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_STORE);
+        return resp;
+    }
+
+    // "filename d29ybGQ=,dir Lw==" -> {filename=world, dir=/}
+    private static Map<String, String> parseMetadata(String header) {
+        Map<String, String> meta = new HashMap<>();
+        if (header == null) return meta;
+        for (String pair : header.split(",")) {
+            String[] kv = pair.trim().split(" ", 2);
+            if (kv[0].isEmpty()) continue;
+            try {
+                meta.put(kv[0], kv.length > 1 ? new String(Base64.getDecoder().decode(kv[1].trim()), StandardCharsets.UTF_8) : "");
+            } catch (IllegalArgumentException ignored) {
+                // 非法的 base64，当作没有这一项
+            }
+        }
+        return meta;
+    }
+
+    private void reject(ChannelHandlerContext ctx, HttpResponseStatus status, String msg) {
+        reset();
+        discarding = true;
+        // 请求体没有被完整读取，这条连接不能再复用
+        fileService.sendError(ctx, status, msg, true);
+    }
+
+    // 中途放弃的 PATCH：已写入的部分照样登记，续传时不必重发
+    private void reset() {
+        if (upload != null && position > start) {
+            try {
+                uploads.received(upload, start, position);
+            } catch (IOException e) {
+                LogPanel.log("[Error] 上传收尾失败: " + e.getMessage());
+            }
+        }
+        upload = null;
+        skipping = false;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        claimed = false;
+        if (!io.execute(ctx.channel(), () -> {
+            reset();
+            discarding = false;
+        })) {
+            LogPanel.log("[Error] I/O 队列已满，中断的分块未能登记");
+        }
+        super.channelInactive(ctx);
+    }
+
+    private String getCurrentUserID(ChannelHandlerContext ctx) {
+        UserSession user = ctx.channel().attr(AuthService.SESSION_KEY).get();
+        return user == null ? "Unknown" : user.getUserId();
+    }
+}
@@ -0,0 +1,239 @@
+package com.vc6.core.handler;
+
+import com.vc6.core.BlockingIoExecutor;
+import com.vc6.core.service.AuthService;
+import com.vc6.core.service.FileService;
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+import com.vc6.model.UserSession;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http.multipart.*;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * 流式上传处理器
+ * 位于 HttpObjectAggregator 之前：multipart 上传请求的 HttpContent 分片直接喂给增量解码器，
+ * 文件部分边收边写入磁盘，不再把整个请求体聚合到内存。
+ * 登录、文本消息等小表单 (以及所有非上传请求) 原样放行给后面的聚合器。
+ * 分流在 I/O 线程完成，解码与落盘交给连接绑定的阻塞 I/O 执行器。
+ */
+public class UploadStreamHandler extends ChannelInboundHandlerAdapter {
+
+    // 这些路径的 POST 都是小表单，继续走聚合器
+    private static final Set<String> SMALL_FORM_PATHS = Set.of("/login", "/api/text");
+
+    private final BlockingIoExecutor io;
+    private final FileService fileService = new FileService();
+    private final AuthService authService = new AuthService();
+
+    // 只在 I/O 线程访问：当前请求由本处理器接管，直到 LastHttpContent
+    private boolean claimed;
+
+    // 以下状态只在连接绑定的执行器上访问
+    private HttpPostRequestDecoder decoder;
+    private File uploadDir;
+    private String uploadUri;
+    private long maxPartBytes;
+    private boolean discarding; // 请求已被拒绝，丢弃剩余的请求体
+
+    public UploadStreamHandler(BlockingIoExecutor io) {
+        this.io = io;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest req && isStreamingUpload(req)) {
+            claimed = true;
+        } else if (!claimed || !(msg instanceof HttpContent)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (msg instanceof LastHttpContent) claimed = false;
+
+        if (!io.execute(ctx.channel(), () -> process(ctx, msg))) {
+            ReferenceCountUtil.release(msg);
+            AdmissionGuardHandler.sendBusy(ctx);
+        }
+    }
+
+    private void process(ChannelHandlerContext ctx, Object msg) {
+        try {
+            if (msg instanceof HttpRequest req) {
+                beginUpload(ctx, req);
+                if (msg instanceof HttpContent content) {
+                    handleContent(ctx, content); // HTTP/2 等场景下请求头可能自带 body
+                }
+            } else if (decoder != null || discarding) {
+                handleContent(ctx, (HttpContent) msg);
+            } else {
+                ReferenceCountUtil.release(msg); // 请求头已因队列满被拒绝，连接正在关闭
+            }
+        } catch (Exception e) {
+            ctx.fireExceptionCaught(e);
+        }
+    }
+
+    private boolean isStreamingUpload(HttpRequest req) {
+        if (req.method() != HttpMethod.POST) return false;
+        String path = new QueryStringDecoder(req.uri()).path();
+        return !SMALL_FORM_PATHS.contains(path) && HttpPostRequestDecoder.isMultipart(req);
+    }
+
+    private void beginUpload(ChannelHandlerContext ctx, HttpRequest req) {
+        reset();
+        fileService.resetHeaders();
+
+        // 1. 身份识别 (与 HttpRequestHandler 保持一致)
+        UserSession user = authService.identifyUser(ctx, req, fileService);
+        ctx.channel().attr(AuthService.SESSION_KEY).set(user);
+
+        // 2. 权限检查：在接收请求体之前就拒绝，避免白白写盘
+        if (authService.isAuthRequired() && !authService.isConfiguredAndLoggedIn(ctx, user)) {
+            LogPanel.log("[Auth] " + user.getUserId() + ": 拦截未授权上传: " + req.uri());
+            reject(ctx, HttpResponseStatus.FORBIDDEN, "Login Required");
+            return;
+        }
+        if (!AppConfig.getInstance().isAllowUpload()) {
+            reject(ctx, HttpResponseStatus.FORBIDDEN, "Write Denied");
+            return;
+        }
+
+        String uri = new QueryStringDecoder(req.uri()).path();
+        File dir = fileService.resolveFile(uri);
+        if (dir == null || !dir.exists() || !dir.isDirectory()) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST, "Invalid Dir");
+            return;
+        }
+
+        if (HttpUtil.is100ContinueExpected(req)) {
+            ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        }
+
+        // 3. 小字段留在内存，文件部分超过 16KB 即转存磁盘；单文件上限沿用配置，由 drain 自行检查
+        // (解码器的 maxLimit 超限与磁盘写入失败抛出的是同一种异常，无法区分 413 与 500)
+        DefaultHttpDataFactory factory = new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE);
+        try {
+            decoder = new HttpPostRequestDecoder(factory, req);
+        } catch (Exception e) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST, "Bad Multipart");
+            return;
+        }
+        uploadDir = dir;
+        uploadUri = uri;
+        maxPartBytes = AppConfig.getInstance().getMaxFileSizeMb() * 1024L * 1024L;
+    }
+
+    private void handleContent(ChannelHandlerContext ctx, HttpContent content) {
+        boolean last = content instanceof LastHttpContent;
+        try {
+            if (discarding) {
+                if (last) discarding = false;
+                return;
+            }
+            try {
+                decoder.offer(content);
+                if (!drain(ctx)) {
+                    LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": 上传超出单文件上限，已拒绝");
+                    fail(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, "File Too Large", last);
+                    return;
+                }
+            } catch (HttpPostRequestDecoder.TooLongFormFieldException | HttpPostRequestDecoder.TooManyFormFieldsException e) {
+                LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": 上传表单字段过多或过长，已拒绝");
+                fail(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, "Form Too Large", last);
+                return;
+            } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
+                // 临时文件写入失败也会被解码器包装成这个异常
+                if (e.getCause() instanceof IOException) {
+                    LogPanel.log("[Error] " + getCurrentUserID(ctx) + ": 上传写入失败: " + e.getCause().getMessage());
+                    fail(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Upload Failed", last);
+                } else {
+                    LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": 上传中断: " + e.getMessage());
+                    fail(ctx, HttpResponseStatus.BAD_REQUEST, "Bad Multipart", last);
+                }
+                return;
+            } catch (Exception e) {
+                LogPanel.log("[Error] " + getCurrentUserID(ctx) + ": 上传保存失败: " + e.getMessage());
+                fail(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Upload Failed", last);
+                return;
+            }
+            if (last) {
+                String uri = uploadUri;
+                reset();
+                fileService.sendRedirect(ctx, uri);
+            }
+        } finally {
+            content.release();
+        }
+    }
+
+    /**
+     * 取出解码器里已经完整的部分并立即落盘，随后释放，保证内存占用与文件大小无关
+     * @return false 表示某个部分 (含正在接收的) 超过了单文件上限
+     */
+    private boolean drain(ChannelHandlerContext ctx) throws Exception {
+        try {
+            while (decoder.hasNext()) {
+                InterfaceHttpData data = decoder.next();
+                if (data == null) continue;
+                try {
+                    if (data instanceof HttpData part && part.length() > maxPartBytes) return false;
+                    if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.FileUpload) {
+                        fileService.saveUpload(ctx, (FileUpload) data, uploadDir);
+                    }
+                } finally {
+                    decoder.removeHttpDataFromClean(data);
+                    data.release();
+                }
+            }
+        } catch (HttpPostRequestDecoder.EndOfDataDecoderException ignored) {
+            // 当前分片已读完，等待下一个 HttpContent
+        }
+        InterfaceHttpData partial = decoder.currentPartialHttpData();
+        return !(partial instanceof HttpData part && part.length() > maxPartBytes);
+    }
+
+    // 请求体中途出错：拒绝后丢弃剩余分片 (已是最后一片则无需再丢弃)
+    private void fail(ChannelHandlerContext ctx, HttpResponseStatus status, String msg, boolean last) {
+        reject(ctx, status, msg);
+        if (last) discarding = false;
+    }
+
+    private void reject(ChannelHandlerContext ctx, HttpResponseStatus status, String msg) {
+        reset();
+        discarding = true;
+        // 请求体没有被完整读取，这条连接不能再复用
+        fileService.sendError(ctx, status, msg, true);
+    }
+
+    private void reset() {
+        if (decoder != null) {
+            decoder.destroy(); // 清理未完成的临时文件
+            decoder = null;
+        }
+        uploadDir = null;
+        uploadUri = null;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        claimed = false;
+        if (!io.execute(ctx.channel(), () -> {
+            reset();
+            discarding = false;
+        })) {
+            LogPanel.log("[Error] I/O 队列已满，未完成的上传临时文件未能清理");
+        }
+        super.channelInactive(ctx);
+    }
+
+    private String getCurrentUserID(ChannelHandlerContext ctx) {
+        UserSession user = ctx.channel().attr(AuthService.SESSION_KEY).get();
+        return user == null ? "Unknown" : user.getUserId();
+    }
+}
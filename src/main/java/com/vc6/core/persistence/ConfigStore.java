@@ -19,6 +19,18 @@ public class ConfigStore {
 
             // 基础
             parse(props, "server.port", config::setPort, Integer::parseInt);
+            parse(props, "server.transport", config::setTransport, s -> s);
+            parse(props, "server.tuning.preset", config::setTuningPreset, s -> s);
+            parse(props, "server.tuning.worker_threads", config::setWorkerThreads, Integer::parseInt);
+            parse(props, "server.tuning.sndbuf_kb", config::setSendBufferKb, Integer::parseInt);
+            parse(props, "server.tuning.rcvbuf_kb", config::setReceiveBufferKb, Integer::parseInt);
+            parse(props, "server.tuning.write_low_kb", config::setWriteBufferLowKb, Integer::parseInt);
+            parse(props, "server.tuning.write_high_kb", config::setWriteBufferHighKb, Integer::parseInt);
+            parse(props, "server.tuning.backlog", config::setBacklog, Integer::parseInt);
+            parse(props, "server.tuning.pooled", config::setPooledAllocator, Boolean::parseBoolean);
+            parse(props, "server.tuning.nodelay", config::setTcpNoDelay, Boolean::parseBoolean);
+            parse(props, "server.tuning.io_threads", config::setIoThreads, Integer::parseInt);
+            parse(props, "server.tuning.virtual_io", config::setVirtualIoThreads, Boolean::parseBoolean);
             parse(props, "local.root_path", config::setRootPath, s -> s);
             parse(props, "server.allow_upload", config::setAllowUpload, Boolean::parseBoolean);
             parse(props, "security.pin", config::setRemotePin, s -> s);
@@ -47,6 +59,18 @@ public class ConfigStore {
         Properties props = new Properties();
 
         props.setProperty("server.port", String.valueOf(config.getPort()));
+        props.setProperty("server.transport", config.getTransport());
+        props.setProperty("server.tuning.preset", config.getTuningPreset());
+        props.setProperty("server.tuning.worker_threads", String.valueOf(config.getWorkerThreads()));
+        props.setProperty("server.tuning.sndbuf_kb", String.valueOf(config.getSendBufferKb()));
+        props.setProperty("server.tuning.rcvbuf_kb", String.valueOf(config.getReceiveBufferKb()));
+        props.setProperty("server.tuning.write_low_kb", String.valueOf(config.getWriteBufferLowKb()));
+        props.setProperty("server.tuning.write_high_kb", String.valueOf(config.getWriteBufferHighKb()));
+        props.setProperty("server.tuning.backlog", String.valueOf(config.getBacklog()));
+        props.setProperty("server.tuning.pooled", String.valueOf(config.isPooledAllocator()));
+        props.setProperty("server.tuning.nodelay", String.valueOf(config.isTcpNoDelay()));
+        props.setProperty("server.tuning.io_threads", String.valueOf(config.getIoThreads()));
+        props.setProperty("server.tuning.virtual_io", String.valueOf(config.isVirtualIoThreads()));
         props.setProperty("local.root_path", config.getRootPath());
         props.setProperty("server.allow_upload", String.valueOf(config.isAllowUpload()));
         props.setProperty("security.pin", config.getRemotePin());
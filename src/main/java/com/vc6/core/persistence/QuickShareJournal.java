@@ -0,0 +1,137 @@
+package com.vc6.core.persistence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 快传索引日志 (只追加)
+ * 每行一条记录，字段以 Tab 分隔，文件名 URL 编码：
+ * H 目录修改时间 目录路径        (文件头，仅首行)
+ * A 目录修改时间 文件修改时间 大小 是否目录 文件名 [单独设置的保留小时数 [内容 SHA-256]]
+ * D 目录修改时间 文件名
+ * 每条记录都带上写入时快传目录的修改时间，启动时与目录当前值一致即可直接信任日志，免去整目录扫描。
+ */
+public class QuickShareJournal {
+
+    private static final String JOURNAL_FILE = "quickshare.journal";
+
+    /**
+     * @param expireHours 单独设置的保留时长 (小时)，0 为永不清理，-1 为跟随全局设置
+     * @param hash        对应内容文件的摘要，不在内容存储中时为 null
+     */
+    public record Entry(String name, long lastModified, long length, boolean directory, int expireHours, String hash) {
+    }
+
+    /**
+     * @param dirModified 最后一条记录写入时目录的修改时间
+     * @param records     日志中的记录条数 (用于判断何时压缩)
+     */
+    public record Snapshot(Map<String, Entry> entries, long dirModified, int records) {
+    }
+
+    private final Path file = Path.of(JOURNAL_FILE);
+    private BufferedWriter writer;
+
+    /**
+     * @return 日志不存在、属于其它目录或已损坏时返回 null
+     */
+    public Snapshot load(String dirPath) {
+        if (!Files.exists(file)) return null;
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        long dirModified = -1;
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            String[] header = line == null ? null : line.split("\t", -1);
+            if (header == null || header.length != 3 || !"H".equals(header[0]) || !dirPath.equals(decode(header[2]))) {
+                return null;
+            }
+            dirModified = Long.parseLong(header[1]);
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                if ("A".equals(f[0]) && f.length >= 6 && f.length <= 8) {
+                    String name = decode(f[5]);
+                    int expireHours = f.length >= 7 ? Integer.parseInt(f[6]) : -1;
+                    String hash = f.length == 8 ? f[7] : null;
+                    entries.put(name, new Entry(name, Long.parseLong(f[2]), Long.parseLong(f[3]), "1".equals(f[4]), expireHours, hash));
+                } else if ("D".equals(f[0]) && f.length == 3) {
+                    entries.remove(decode(f[2]));
+                } else {
+                    return null; // 写到一半的记录 (如断电)，交给调用方重新扫描
+                }
+                dirModified = Long.parseLong(f[1]);
+                records++;
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return new Snapshot(entries, dirModified, records);
+    }
+
+    public void appendAdd(long dirModified, Entry e) throws IOException {
+        append(addRecord(dirModified, e));
+    }
+
+    public void appendDelete(long dirModified, String name) throws IOException {
+        append("D\t" + dirModified + "\t" + encode(name));
+    }
+
+    /**
+     * 用当前全量数据重写日志 (先写临时文件再原子替换)
+     */
+    public synchronized void rewrite(String dirPath, long dirModified, Collection<Entry> entries) throws IOException {
+        close();
+        Path tmp = file.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write("H\t" + dirModified + "\t" + encode(dirPath) + "\n");
+            for (Entry e : entries) {
+                w.write(addRecord(dirModified, e) + "\n");
+            }
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+        }
+        writer = null;
+    }
+
+    private synchronized void append(String line) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private static String addRecord(long dirModified, Entry e) {
+        String record = "A\t" + dirModified + "\t" + e.lastModified() + "\t" + e.length() + "\t" + (e.directory() ? 1 : 0) + "\t" + encode(e.name());
+        if (e.hash() != null) return record + "\t" + e.expireHours() + "\t" + e.hash();
+        return e.expireHours() < 0 ? record : record + "\t" + e.expireHours();
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String s) {
+        return URLDecoder.decode(s, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,255 @@
+package com.vc6.core.persistence;
+
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.UserTraffic;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 用户与访问记录的二进制日志 (只追加)
+ * 文件头为魔数与版本号，之后每条记录为：类型 (1 字节) + 长度 (int) + 内容 + 内容的 CRC32 (int)
+ * U uid 昵称 IP 设备 最后活跃时间            登录用户的最新资料
+ * R uid                                   用户被注销
+ * A uid 活动类型 时间 字节数                 一次登录 / 上传 / 下载
+ * S uid 登录次数 上传数 上传字节 下载数 下载字节 最后活动   压缩后的累计统计
+ * 启动时顺序重放即可得到全部用户和统计；末尾写了一半的记录 (断电等) 会被截掉。
+ */
+public class SessionLog {
+
+    private static final String LOG_FILE = "sessions.log";
+    private static final int MAGIC = 0x4C4C534C; // "LLSL"
+    private static final byte VERSION = 1;
+    private static final int MAX_PAYLOAD = 64 * 1024;
+
+    private static final byte USER = 'U';
+    private static final byte REMOVE = 'R';
+    private static final byte ACTIVITY = 'A';
+    private static final byte STATS = 'S';
+
+    public record UserRecord(String uid, String name, String ip, String device, long lastActive) {
+    }
+
+    /**
+     * @param records 日志中的记录条数 (用于判断何时压缩)
+     */
+    public record Snapshot(Map<String, UserRecord> users, Map<String, UserTraffic> traffic, int records) {
+    }
+
+    private final Path file;
+    private DataOutputStream out;
+
+    public SessionLog() {
+        this(Path.of(LOG_FILE));
+    }
+
+    SessionLog(Path file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    public synchronized Snapshot replay() {
+        Map<String, UserRecord> users = new LinkedHashMap<>();
+        Map<String, UserTraffic> traffic = new HashMap<>();
+        int records = 0;
+        if (!Files.exists(file)) return new Snapshot(users, traffic, 0);
+
+        long good = 0;
+        boolean unrecognized = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                unrecognized = true; // 关闭文件后再另存
+            } else {
+                good = 5;
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int type = in.read();
+                    if (type < 0) break;
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_PAYLOAD) break; // 长度被写坏
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if (in.readInt() != (int) crc.getValue()) break;
+                    apply((byte) type, new DataInputStream(new ByteArrayInputStream(payload)), users, traffic);
+                    good += 1 + 4 + payload.length + 4;
+                    records++;
+                }
+            }
+        } catch (EOFException e) {
+            // 末尾的记录不完整
+        } catch (IOException e) {
+            // 读到 good 为止的记录都已校验过，之后的部分同样截掉，否则新记录会追加在坏尾巴后面
+            LogPanel.log("[Error] 用户日志读取失败: " + e.getMessage());
+        }
+
+        if (unrecognized) {
+            try {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+                LogPanel.log("[Error] 用户日志格式无法识别，已另存为 " + file.getFileName() + ".bad");
+            } catch (IOException e) {
+                LogPanel.log("[Error] 用户日志格式无法识别，另存失败: " + e.getMessage());
+            }
+            return new Snapshot(users, traffic, 0);
+        }
+        truncate(good);
+        return new Snapshot(users, traffic, records);
+    }
+
+    public synchronized void appendUser(UserRecord u) throws IOException {
+        append(USER, d -> {
+            d.writeUTF(u.uid());
+            d.writeUTF(u.name());
+            d.writeUTF(u.ip());
+            d.writeUTF(u.device());
+            d.writeLong(u.lastActive());
+        });
+    }
+
+    public synchronized void appendRemove(String uid) throws IOException {
+        append(REMOVE, d -> d.writeUTF(uid));
+    }
+
+    public synchronized void appendActivity(String uid, UserTraffic.Activity activity, long time, long bytes) throws IOException {
+        append(ACTIVITY, d -> {
+            d.writeUTF(uid);
+            d.writeByte(activity.ordinal());
+            d.writeLong(time);
+            d.writeLong(bytes);
+        });
+    }
+
+    /**
+     * 让已追加的记录真正落盘
+     */
+    public synchronized void flush() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    /**
+     * 用当前全部状态重写日志 (先写临时文件再原子替换)
+     */
+    public synchronized void rewrite(Collection<UserRecord> users, Map<String, UserTraffic> traffic) throws IOException {
+        close();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        out = open(tmp, false);
+        try {
+            for (UserRecord u : users) appendUser(u);
+            for (Map.Entry<String, UserTraffic> e : traffic.entrySet()) {
+                UserTraffic t = e.getValue();
+                append(STATS, d -> {
+                    d.writeUTF(e.getKey());
+                    d.writeInt(t.logins());
+                    d.writeLong(t.uploads());
+                    d.writeLong(t.uploadBytes());
+                    d.writeLong(t.downloads());
+                    d.writeLong(t.downloadBytes());
+                    d.writeLong(t.lastSeen());
+                });
+            }
+        } finally {
+            close();
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    public synchronized void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream d) throws IOException;
+    }
+
+    private void append(byte type, PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        writer.write(new DataOutputStream(buf));
+        byte[] payload = buf.toByteArray();
+        // 与 replay 的上限一致：写得进去却读不回来的记录会让重放把它连同之后的记录一起截掉
+        if (payload.length > MAX_PAYLOAD) throw new IOException("记录过大 (" + payload.length + " 字节)");
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        if (out == null) out = open(file, true);
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static DataOutputStream open(Path path, boolean append) throws IOException {
+        boolean fresh = !append || !Files.exists(path) || Files.size(path) == 0;
+        OutputStream os = append
+                ? Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newOutputStream(path);
+        DataOutputStream d = new DataOutputStream(new BufferedOutputStream(os, 16 * 1024));
+        if (fresh) {
+            d.writeInt(MAGIC);
+            d.writeByte(VERSION);
+        }
+        return d;
+    }
+
+    private static void apply(byte type, DataInputStream d, Map<String, UserRecord> users,
+                              Map<String, UserTraffic> traffic) throws IOException {
+        switch (type) {
+            case USER -> {
+                UserRecord u = new UserRecord(d.readUTF(), d.readUTF(), d.readUTF(), d.readUTF(), d.readLong());
+                users.put(u.uid(), u);
+            }
+            case REMOVE -> users.remove(d.readUTF());
+            case ACTIVITY -> {
+                String uid = d.readUTF();
+                int kind = d.readByte();
+                long time = d.readLong();
+                long bytes = d.readLong();
+                UserTraffic.Activity[] kinds = UserTraffic.Activity.values();
+                if (kind < 0 || kind >= kinds.length) return;
+                traffic.put(uid, traffic.getOrDefault(uid, UserTraffic.EMPTY).plus(kinds[kind], bytes, time));
+            }
+            case STATS -> {
+                String uid = d.readUTF();
+                traffic.put(uid, new UserTraffic(d.readInt(), d.readLong(), d.readLong(), d.readLong(), d.readLong(), d.readLong()));
+            }
+            default -> {
+                // 新版本写入的未知记录，跳过
+            }
+        }
+    }
+
+    // 截掉末尾不完整的记录，之后的追加从完整记录后面接着写
+    private void truncate(long size) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (ch.size() > size) {
+                ch.truncate(size);
+                LogPanel.log("[System] 用户日志末尾有不完整的记录，已截断");
+            }
+        } catch (IOException e) {
+            LogPanel.log("[Error] 用户日志修复失败: " + e.getMessage());
+        }
+    }
+}
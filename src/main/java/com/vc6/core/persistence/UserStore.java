@@ -0,0 +1,230 @@
+package com.vc6.core.persistence;
+
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.UserSession;
+import com.vc6.model.UserTraffic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已登录用户与访问统计的持久化，底层为只追加的 SessionLog，内存中保留全部用户与统计作为索引
+ * 会话的昵称、IP、最后活跃时间变化时只标记为脏，访问记录先进队列，由后台线程每隔几秒合并追加到日志；
+ * 退出时再写一次。日志记录数远多于实际条目时整体重写压缩 (临时文件 + 原子改名)。
+ */
+public class UserStore {
+
+    private static final String LEGACY_FILE = "users.properties";
+    private static final long FLUSH_INTERVAL_MS = 5_000;
+    // 压缩时丢弃多久没有活动的访客统计 (已登录用户的统计一直保留)
+    private static final long GUEST_TRAFFIC_KEEP_MS = TimeUnit.DAYS.toMillis(30);
+
+    private record PendingActivity(String uid, UserTraffic.Activity activity, long time, long bytes) {
+    }
+
+    private static final UserStore INSTANCE = new UserStore();
+
+    private final SessionLog log = new SessionLog();
+    // 以下为日志重放后的当前状态，由对象锁保护
+    private final Map<String, SessionLog.UserRecord> users = new LinkedHashMap<>();
+    private final Map<String, UserTraffic> traffic = new HashMap<>();
+    private final List<String> removals = new ArrayList<>();
+    private int records;
+
+    // uid -> 有待写出变化的会话；同一会话在一个周期内无论变化多少次只写一次
+    private final Map<String, UserSession> dirty = new ConcurrentHashMap<>();
+    private final Queue<PendingActivity> activities = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "user-store-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean discarded;
+
+    public static UserStore getInstance() {
+        return INSTANCE;
+    }
+
+    private UserStore() {
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flush();
+            log.close();
+        }, "user-store-shutdown"));
+    }
+
+    /**
+     * 重放日志，返回已保存的登录用户 (首次运行时从旧的 users.properties 迁移)
+     */
+    public synchronized Collection<SessionLog.UserRecord> load() {
+        if (!log.exists() && Files.exists(Path.of(LEGACY_FILE))) {
+            migrateLegacy();
+        } else {
+            SessionLog.Snapshot snapshot = log.replay();
+            users.putAll(snapshot.users());
+            traffic.putAll(snapshot.traffic());
+            records = snapshot.records();
+        }
+        return new ArrayList<>(users.values());
+    }
+
+    public synchronized String getNickname(String uid) {
+        SessionLog.UserRecord u = users.get(uid);
+        return u == null ? null : u.name();
+    }
+
+    public synchronized UserTraffic getTraffic(String uid) {
+        return traffic.getOrDefault(uid, UserTraffic.EMPTY);
+    }
+
+    /**
+     * 会话有变化，稍后写出 (只保存已登录的会话)
+     */
+    public void markDirty(UserSession s) {
+        dirty.put(s.getUserId(), s);
+    }
+
+    /**
+     * 用户被注销：立即从内存中的记录删除 (之后不会再被自动恢复登录)，日志稍后追加
+     */
+    public synchronized void remove(String uid) {
+        dirty.remove(uid);
+        if (users.remove(uid) != null) removals.add(uid);
+    }
+
+    /**
+     * 记一次登录 / 上传 / 下载，返回该用户更新后的累计统计
+     */
+    public synchronized UserTraffic record(String uid, UserTraffic.Activity activity, long bytes) {
+        long now = System.currentTimeMillis();
+        UserTraffic updated = traffic.getOrDefault(uid, UserTraffic.EMPTY).plus(activity, bytes, now);
+        traffic.put(uid, updated);
+        activities.add(new PendingActivity(uid, activity, now, bytes));
+        return updated;
+    }
+
+    /**
+     * 把积累的变化追加到日志；没有变化时什么也不做
+     * 单条记录写入失败 (如字段过长) 只跳过这一条，不影响同批的其余记录
+     */
+    public synchronized void flush() {
+        if (discarded || (dirty.isEmpty() && activities.isEmpty() && removals.isEmpty())) return;
+        int failed = 0;
+        IOException lastError = null;
+        for (String uid : removals) {
+            try {
+                log.appendRemove(uid);
+                records++;
+            } catch (IOException e) {
+                failed++;
+                lastError = e;
+            }
+        }
+        removals.clear();
+        for (String uid : dirty.keySet()) {
+            UserSession s = dirty.remove(uid);
+            // 未登录的访客不落盘
+            if (s == null || !s.isValuable()) continue;
+            SessionLog.UserRecord u = toRecord(s);
+            if (u.equals(users.get(uid))) continue;
+            try {
+                log.appendUser(u);
+                records++;
+                users.put(uid, u); // 写入成功后才算已保存，失败的下次变化时还会再写
+            } catch (IOException e) {
+                failed++;
+                lastError = e;
+            }
+        }
+        PendingActivity a;
+        while ((a = activities.poll()) != null) {
+            try {
+                log.appendActivity(a.uid(), a.activity(), a.time(), a.bytes());
+                records++;
+            } catch (IOException e) {
+                failed++;
+                lastError = e;
+            }
+        }
+        if (lastError != null) {
+            LogPanel.log("[Error] 用户数据保存失败 " + failed + " 条: " + lastError.getMessage());
+        }
+        try {
+            log.flush();
+            maybeCompact();
+        } catch (IOException e) {
+            LogPanel.log("[Error] 用户数据保存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重置设置：删除数据文件，之后不再写入 (程序随即退出)
+     */
+    public synchronized void discard() {
+        discarded = true;
+        dirty.clear();
+        activities.clear();
+        removals.clear();
+        users.clear();
+        traffic.clear();
+        try {
+            log.delete();
+            Files.deleteIfExists(Path.of(LEGACY_FILE));
+        } catch (IOException e) {
+            LogPanel.log("[Error] 用户数据删除失败: " + e.getMessage());
+        }
+    }
+
+    // 记录数远多于实际条目时 (每次活跃、每次下载都会追加一条)，按当前状态重写
+    private void maybeCompact() throws IOException {
+        if (records <= Math.max(1000, 4 * (users.size() + traffic.size()))) return;
+        long cutoff = System.currentTimeMillis() - GUEST_TRAFFIC_KEEP_MS;
+        traffic.entrySet().removeIf(e -> !users.containsKey(e.getKey()) && e.getValue().lastSeen() < cutoff);
+        log.rewrite(users.values(), traffic);
+        records = users.size() + traffic.size();
+    }
+
+    private void migrateLegacy() {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(LEGACY_FILE), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        } catch (IOException e) {
+            LogPanel.log("[Error] 用户数据读取失败: " + e.getMessage());
+            return;
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (!key.endsWith(".name")) continue;
+            String uid = key.substring(0, key.length() - ".name".length());
+            long time = 0;
+            try {
+                time = Long.parseLong(props.getProperty(uid + ".time", "0"));
+            } catch (NumberFormatException ignored) {
+            }
+            users.put(uid, new SessionLog.UserRecord(uid, props.getProperty(key),
+                    props.getProperty(uid + ".ip", "Unknown"), props.getProperty(uid + ".dev", "Unknown"), time));
+        }
+        try {
+            log.rewrite(users.values(), traffic);
+            records = users.size();
+            Files.move(Path.of(LEGACY_FILE), Path.of(LEGACY_FILE + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+            LogPanel.log("[System] 已将 " + users.size() + " 个用户迁移到新的用户日志");
+        } catch (IOException e) {
+            LogPanel.log("[Error] 用户数据迁移失败: " + e.getMessage());
+        }
+    }
+
+    private static SessionLog.UserRecord toRecord(UserSession s) {
+        return new SessionLog.UserRecord(s.getUserId(), Objects.toString(s.getNickname(), ""),
+                Objects.toString(s.getIp(), ""), Objects.toString(s.getDeviceName(), ""), s.getLastActive());
+    }
+}
@@ -1,41 +1,71 @@
 package com.vc6.core.service;
 
+import com.vc6.core.persistence.UserStore;
 import com.vc6.model.AppConfig;
+import com.vc6.model.ServerMode;
 import com.vc6.model.UserSession;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
-import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.DefaultCookie;
-import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
 import io.netty.util.AttributeKey;
 
 import java.net.InetSocketAddress;
-import java.util.Set;
 
 public class AuthService {
 
-    private static final String AUTH_COOKIE = "LAN_LINKER_AUTH"; // 用于 PIN 码登录
-    private static final String UID_COOKIE = "LAN_LINKER_UID";   // 用于标识设备身份
+    private static final String TOKEN_COOKIE = "LAN_LINKER_TOKEN"; // 签名令牌：UID + 登录状态
+    private static final String UID_COOKIE = "LAN_LINKER_UID";     // 旧版本的明文 UID，仅用于迁移，随后清除
+    private static final String AUTH_COOKIE = "LAN_LINKER_AUTH";   // 旧版本的明文 PIN，仅用于迁移，随后清除
+    private static final int TOKEN_MAX_AGE = 60 * 60 * 24 * 365;
     public static final AttributeKey<UserSession> SESSION_KEY = AttributeKey.valueOf("USER_SESSION");
+    // 本次请求携带的令牌是否为有效的登录令牌 (由 identifyUser 写入)
+    public static final AttributeKey<Boolean> AUTHED_KEY = AttributeKey.valueOf("USER_AUTHED");
+
+    private final SessionTokens tokens = SessionTokens.getInstance();
+
+    // scanCookies 的结果：各 Cookie 值在请求头中的位置，-1 表示没有 (每个处理器独占一个 AuthService，不存在并发)
+    private int tokenFrom, tokenTo, uidFrom, uidTo, authFrom, authTo;
+
     /**
      * 【入口方法】识别并登记用户
      * @param ctx Netty 上下文
      * @param req 请求对象
-     * @param resp 准备返回的响应对象 (用于种下新 Cookie)
+     * @param out 需要种下新 Cookie 时写入其附加响应头
      */
-    public UserSession identifyUser(ChannelHandlerContext ctx, FullHttpRequest req, HttpResponse resp) {
+    public UserSession identifyUser(ChannelHandlerContext ctx, HttpRequest req, FileService out) {
         String ip = "Unknown";
         if (ctx.channel().remoteAddress() instanceof InetSocketAddress addr) {
             ip = addr.getAddress().getHostAddress();
         }
 
-        // 1. 尝试从浏览器拿身份证 (UID)
-        String uid = getUidFromCookie(req);
-        UserSession session = null;
+        // 1. 单次扫描 Cookie 头，优先使用签名令牌
+        String cookieHeader = req.headers().get(HttpHeaderNames.COOKIE);
+        scanCookies(cookieHeader);
+        String uid = null;
+        boolean authed = false;
+        boolean reissue = false;
+        if (tokenFrom >= 0) {
+            SessionTokens.Reader token = tokens.verify(cookieHeader, tokenFrom, tokenTo);
+            if (token != null) {
+                uid = token.uid();
+                authed = token.authed();
+            }
+        }
+        // 2. 旧版本的明文 Cookie：谁都能伪造，只在带着正确 PIN 或确实是登录过的用户时沿用其 UID，换发签名令牌
+        if (uid == null && uidFrom >= 0) {
+            String legacyUid = cookieHeader.substring(uidFrom, uidTo);
+            boolean pinOk = authFrom >= 0 && authTo > authFrom && pinMatches(cookieHeader, authFrom, authTo);
+            if (pinOk || UserStore.getInstance().getNickname(legacyUid) != null) {
+                uid = legacyUid;
+                authed = pinOk;
+                reissue = true;
+            }
+        }
 
+        UserSession session = null;
         if (uid != null) {
             session = SessionManager.getInstance().getOrCreateSession(uid, ip, req.headers().get(HttpHeaderNames.USER_AGENT));
         } else {
@@ -47,41 +77,70 @@ public class AuthService {
             uid = java.util.UUID.randomUUID().toString().substring(0, 8);
             String ua = req.headers().get(HttpHeaderNames.USER_AGENT);
             session = SessionManager.getInstance().getOrCreateSession(uid, ip, ua);
+            authed = false;
+            reissue = true;
+        }
 
-            // 种下永久 UID Cookie
-            Cookie c = new DefaultCookie("LAN_LINKER_UID", uid);
-            c.setMaxAge(60 * 60 * 24 * 365);
-            c.setPath("/");
-            c.setSecure(false);
-            resp.headers().add(HttpHeaderNames.SET_COOKIE, ServerCookieEncoder.LAX.encode(c));
+        if (reissue && SessionTokens.isValidUid(session.getUserId())) {
+            out.addHeader(HttpHeaderNames.SET_COOKIE.toString(), authed
+                    ? createAuthCookie(session)
+                    : tokenCookie(tokens.issue(session.getUserId(), SessionTokens.LEVEL_GUEST, 0)));
         }
 
+        // 旧 Cookie 一律清除，尤其是明文 PIN，不能再随每个请求发送
+        if (uidFrom >= 0) out.addHeader(HttpHeaderNames.SET_COOKIE.toString(), expiredCookie(UID_COOKIE));
+        if (authFrom >= 0) out.addHeader(HttpHeaderNames.SET_COOKIE.toString(), expiredCookie(AUTH_COOKIE));
+
+        ctx.channel().attr(AUTHED_KEY).set(authed);
         session.updateLastActive();
         return session;
     }
 
-    /**
-     * 【私有辅助方法】从请求头解析 UID
-     */
-    private String getUidFromCookie(FullHttpRequest req) {
-        String cookieHeader = req.headers().get(HttpHeaderNames.COOKIE);
-        // 调试日志
-        if (cookieHeader != null) {
-            Set<Cookie> cookies = ServerCookieDecoder.LAX.decode(cookieHeader);
-            for (Cookie c : cookies) {
-                if (UID_COOKIE.equals(c.name())) {
-                    return c.value();
-                }
-            }
+    // 按 "a=b; c=d" 逐字符扫描一遍，只记录关心的几个值的位置，不创建 Cookie 对象
+    private void scanCookies(String h) {
+        tokenFrom = tokenTo = uidFrom = uidTo = authFrom = authTo = -1;
+        if (h == null) return;
+        int n = h.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && (h.charAt(i) == ' ' || h.charAt(i) == ';')) i++;
+            int nameFrom = i;
+            while (i < n && h.charAt(i) != '=' && h.charAt(i) != ';') i++;
+            int nameTo = i;
+            if (i >= n || h.charAt(i) != '=') continue;
+            int from = ++i;
+            while (i < n && h.charAt(i) != ';') i++;
+            int to = i;
+            while (to > from && h.charAt(to - 1) == ' ') to--;
+            if (to - from >= 2 && h.charAt(from) == '"' && h.charAt(to - 1) == '"') { from++; to--; }
+
+            // 同名 Cookie 以第一个为准 (与 RFC 6265 的路径排序一致，最具体的在前)
+            if (tokenFrom < 0 && nameIs(h, nameFrom, nameTo, TOKEN_COOKIE)) { tokenFrom = from; tokenTo = to; }
+            else if (uidFrom < 0 && nameIs(h, nameFrom, nameTo, UID_COOKIE)) { uidFrom = from; uidTo = to; }
+            else if (authFrom < 0 && nameIs(h, nameFrom, nameTo, AUTH_COOKIE)) { authFrom = from; authTo = to; }
         }
-        return null;
+    }
+
+    private static boolean nameIs(String h, int from, int to, String name) {
+        return to - from == name.length() && h.regionMatches(from, name, 0, name.length());
     }
 
     // ==========================================
-    // 下面是原有的 PIN 码登录逻辑 (保持不变)
+    // 下面是 PIN 码登录逻辑
     // ==========================================
 
-    public boolean isConfiguredAndLoggedIn(String cookieHeader, UserSession user) {
+    /**
+     * 当前模式是否需要 PIN 码验证 (开启全局保护，或处于远程全盘模式)
+     */
+    public boolean isAuthRequired() {
+        return AppConfig.getInstance().isGlobalAuthEnabled()
+                || AppConfig.getInstance().getServerMode() == ServerMode.REMOTE_DISK;
+    }
+
+    /**
+     * 依据 identifyUser 已校验过的令牌判断，不再解析 Cookie
+     */
+    public boolean isConfiguredAndLoggedIn(ChannelHandlerContext ctx, UserSession user) {
         String serverPin = AppConfig.getInstance().getRemotePin();
         if (serverPin == null || serverPin.trim().isEmpty() || !AppConfig.getInstance().isGlobalAuthEnabled()) {
             return true;
@@ -90,41 +149,60 @@ public class AuthService {
         if (user != null && !user.isValuable())
             return false;
 
-        if (cookieHeader == null) return false;
-        Set<Cookie> cookies = ServerCookieDecoder.LAX.decode(cookieHeader);
-        for (Cookie cookie : cookies) {
-            if (AUTH_COOKIE.equals(cookie.name())) {
-                return serverPin.equals(cookie.value());
-            }
-        }
-        return false;
+        return Boolean.TRUE.equals(ctx.channel().attr(AUTHED_KEY).get());
     }
 
     public boolean verifyPin(String inputPin) {
-        String serverPin = AppConfig.getInstance().getRemotePin();
-        return serverPin != null && serverPin.equals(inputPin);
+        return inputPin != null && pinMatches(inputPin, 0, inputPin.length());
     }
 
-    public String createAuthCookie() {
-        String pin = AppConfig.getInstance().getRemotePin();
-        Cookie cookie = new DefaultCookie(AUTH_COOKIE, pin == null ? "" : pin);
-        cookie.setPath("/");
-        cookie.setHttpOnly(true);
-        cookie.setSecure(false);
+    // 常量时间比较 s[from, to) 与服务端 PIN
+    private boolean pinMatches(String s, int from, int to) {
+        String serverPin = AppConfig.getInstance().getRemotePin();
+        if (serverPin == null) return false;
+        int len = to - from;
+        if (serverPin.isEmpty()) return len == 0;
+        int diff = len ^ serverPin.length();
+        for (int i = 0; i < len; i++) {
+            diff |= s.charAt(from + i) ^ serverPin.charAt(i % serverPin.length());
+        }
+        return diff == 0;
+    }
 
+    /**
+     * 登录成功后下发的令牌，登录状态在设置的有效期内有效
+     */
+    public String createAuthCookie(UserSession user) {
+        long ttl;
         int expiryTime = AppConfig.getInstance().getSessionExpiryTime();
-        if (expiryTime  == 1) {
-            cookie.setMaxAge(60*60);
-        } else if (expiryTime == 2) {
-            cookie.setMaxAge(60*60*24);
+        if (expiryTime == 2) {
+            ttl = 60*60*24;
         } else if (expiryTime == 3) {
-            cookie.setMaxAge(60*60*24*7);
+            ttl = 60*60*24*7;
         } else if (expiryTime == 4) {
-            cookie.setMaxAge(60*60*24*30);
+            ttl = 60*60*24*30;
         } else if (expiryTime == 5) {
-            cookie.setMaxAge(60*60*24*365);
+            ttl = 60*60*24*365;
+        } else {
+            ttl = 60*60;
         }
+        return tokenCookie(tokens.issue(user.getUserId(), SessionTokens.LEVEL_USER, System.currentTimeMillis() + ttl * 1000));
+    }
 
+    // 令牌 Cookie 本身长期保留 (其中的 UID 用于识别设备)，登录是否过期看令牌内的到期时间
+    private String tokenCookie(String token) {
+        Cookie cookie = new DefaultCookie(TOKEN_COOKIE, token);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(false);
+        cookie.setMaxAge(TOKEN_MAX_AGE);
+        return ServerCookieEncoder.LAX.encode(cookie);
+    }
+
+    private static String expiredCookie(String name) {
+        Cookie cookie = new DefaultCookie(name, "");
+        cookie.setPath("/");
+        cookie.setMaxAge(0);
         return ServerCookieEncoder.LAX.encode(cookie);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * 目录元数据缓存 (网页列表与桌面文件表共用)
+ * 缓存每个目录的 stat 结果和两种排序；目录注册到 WatchService，
+ * 有文件增删改时整目录失效。容量有限，按最近最少使用淘汰。
+ * 无法监听的目录 (如部分网络盘) 退化为比较目录修改时间。
+ */
+public class DirectoryCache {
+
+    private static final int MAX_DIRS = 256;
+    // 所有已缓存目录的条目总数上限 (超出时按最近最少使用淘汰)，避免几个超大目录占满内存
+    private static final int MAX_TOTAL_ENTRIES = 200_000;
+
+    /**
+     * 单个文件的 stat 快照
+     */
+    public record Entry(File file, String name, boolean directory, boolean hidden, boolean readable,
+                        long length, long lastModified) {
+        public static Entry of(File f) {
+            return new Entry(f, f.getName(), f.isDirectory(), f.isHidden(), f.canRead(), f.length(), f.lastModified());
+        }
+
+        public boolean isVisible() { return !hidden && readable; }
+    }
+
+    /**
+     * 已缓存目录中的文件变化 (由监听线程回调，含外部程序造成的变化)
+     */
+    public interface ChangeListener {
+        /**
+         * @param name 变化的文件名；事件溢出 (变化太多来不及逐条上报) 时为 null
+         */
+        void onChange(Path dir, String name, WatchEvent.Kind<?> kind);
+    }
+
+    /**
+     * 列表排序方式：文件夹始终在前，同值按名称区分 (目录内名称唯一，因此是全序，可用作分页游标)
+     */
+    public enum SortKey {
+        NAME, SIZE, MTIME;
+
+        public static SortKey fromParam(String s) {
+            if (s == null) return NAME;
+            return switch (s.toLowerCase()) {
+                case "size" -> SIZE;
+                case "mtime" -> MTIME;
+                default -> NAME;
+            };
+        }
+
+        public Comparator<Entry> comparator(boolean descending) {
+            Comparator<Entry> byKey = switch (this) {
+                case NAME -> (a, b) -> a.name().compareToIgnoreCase(b.name());
+                case SIZE -> Comparator.comparingLong(Entry::length);
+                case MTIME -> Comparator.comparingLong(Entry::lastModified);
+            };
+            Comparator<Entry> tieBreak = Comparator.comparing(Entry::name, String.CASE_INSENSITIVE_ORDER).thenComparing(Entry::name);
+            Comparator<Entry> order = byKey.thenComparing(tieBreak);
+            if (descending) order = order.reversed();
+            Comparator<Entry> dirsFirst = (a, b) -> Boolean.compare(b.directory(), a.directory());
+            return dirsFirst.thenComparing(order);
+        }
+    }
+
+    public static final class Listing {
+        private final List<Entry> entries;
+        private final long dirModified;
+        private final WatchKey watchKey;
+        private final Map<String, List<Entry>> sortedViews = new java.util.concurrent.ConcurrentHashMap<>();
+        private volatile List<Entry> byNewest;
+
+        private Listing(List<Entry> entries, long dirModified, WatchKey watchKey) {
+            this.entries = entries;
+            this.dirModified = dirModified;
+            this.watchKey = watchKey;
+        }
+
+        /**
+         * 文件夹在前，名称不区分大小写
+         */
+        public List<Entry> byName() {
+            return sorted(SortKey.NAME, false);
+        }
+
+        /**
+         * 每种排序只计算一次，之后的请求 (含分页) 直接复用
+         */
+        public List<Entry> sorted(SortKey key, boolean descending) {
+            return sortedViews.computeIfAbsent(key + (descending ? ":desc" : ":asc"), k -> {
+                List<Entry> sorted = new ArrayList<>(entries);
+                sorted.sort(key.comparator(descending));
+                return Collections.unmodifiableList(sorted);
+            });
+        }
+
+        /**
+         * 按修改时间倒序 (快传时间轴)
+         */
+        public List<Entry> byNewest() {
+            List<Entry> sorted = byNewest;
+            if (sorted == null) {
+                sorted = new ArrayList<>(entries);
+                sorted.sort((a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+                byNewest = sorted = Collections.unmodifiableList(sorted);
+            }
+            return sorted;
+        }
+
+        public int size() { return entries.size(); }
+    }
+
+    private static final DirectoryCache INSTANCE = new DirectoryCache();
+
+    private final LinkedHashMap<Path, Listing> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final List<ChangeListener> listeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+    // 常驻监听的目录：缓存失效或淘汰时不取消监听 (如快传目录，变化需要实时推送)
+    private final Set<Path> pinned = new HashSet<>();
+    private int totalEntries;
+    // 每次失效加一；加载期间发生过失效的结果不放入缓存，避免把旧数据缓存下来
+    private long generation;
+    private WatchService watchService;
+
+    public static DirectoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    private DirectoryCache() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread t = new Thread(this::watchLoop, "dir-cache-watch");
+            t.setDaemon(true);
+            t.start();
+        } catch (IOException e) {
+            LogPanel.log("[System] 目录监听不可用，列表缓存改为按修改时间校验: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return 目录不存在或无法读取时返回 null
+     */
+    public Listing get(File dir) {
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        long startGeneration;
+        synchronized (this) {
+            Listing cached = cache.get(path);
+            if (cached != null && (cached.watchKey != null || cached.dirModified == dir.lastModified())) {
+                return cached;
+            }
+            startGeneration = generation;
+        }
+        Listing fresh = load(dir, path);
+        if (fresh == null) return null;
+        synchronized (this) {
+            if (generation != startGeneration) {
+                releaseUnused(fresh.watchKey);
+                return fresh;
+            }
+            Listing existing = cache.get(path);
+            // 并发加载同一目录时 WatchKey 是同一个，保留先放入的那份
+            if (existing != null && existing.watchKey != null) return existing;
+            remove(path);
+            cache.put(path, fresh);
+            totalEntries += fresh.size();
+            if (fresh.watchKey != null) watchedDirs.put(fresh.watchKey, path);
+            evict();
+        }
+        return fresh;
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 持续监听某个目录，即使它的列表不在缓存中
+     */
+    public void watch(File dir) {
+        if (watchService == null) return;
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        synchronized (this) {
+            if (!pinned.add(path)) return;
+            try {
+                WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirs.put(key, path);
+            } catch (Exception e) {
+                pinned.remove(path); // 目录还不存在或不支持监听，下次再试
+            }
+        }
+    }
+
+    /**
+     * 本服务自己修改了目录 (上传、删除、新建) 时立即失效，不等待异步的监听事件
+     */
+    public void invalidate(File dir) {
+        if (dir == null) return;
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        synchronized (this) {
+            generation++;
+            remove(path);
+            // 父目录中显示的该目录修改时间也变了
+            if (path.getParent() != null) remove(path.getParent());
+        }
+    }
+
+    private Listing load(File dir, Path path) {
+        // 先注册监听再列目录，列举过程中发生的变化也能收到事件
+        WatchKey key = null;
+        if (watchService != null) {
+            try {
+                key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (Exception ignored) {
+                // 不支持监听的文件系统，回退到修改时间校验
+            }
+        }
+
+        long dirModified = dir.lastModified();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            releaseUnused(key); // 列不出来就不会进缓存，监听也不能留下
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>(files.length);
+        for (File f : files) {
+            entries.add(Entry.of(f));
+        }
+        return new Listing(entries, dirModified, key);
+    }
+
+    // 没被缓存或常驻监听引用的 WatchKey 取消掉 (同一目录重复注册得到的是同一个 key)
+    private synchronized void releaseUnused(WatchKey key) {
+        if (key != null && !watchedDirs.containsKey(key)) key.cancel();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            List<WatchEvent<?>> events = key.pollEvents(); // 缓存不区分具体事件，任何变化都整目录失效 (含 OVERFLOW)
+            Path path;
+            synchronized (this) {
+                generation++;
+                path = watchedDirs.get(key);
+                if (path != null) {
+                    remove(path);
+                    if (path.getParent() != null) remove(path.getParent());
+                }
+            }
+            key.reset();
+            if (path != null) notifyListeners(path, events);
+        }
+    }
+
+    private void notifyListeners(Path dir, List<WatchEvent<?>> events) {
+        for (WatchEvent<?> event : events) {
+            String name = event.context() instanceof Path p ? p.toString() : null;
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onChange(dir, name, event.kind());
+                } catch (RuntimeException e) {
+                    LogPanel.log("[Error] 目录变化回调失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // 调用方需持有锁
+    private void remove(Path path) {
+        Listing old = cache.remove(path);
+        if (old == null) return;
+        totalEntries -= old.size();
+        if (old.watchKey != null && !pinned.contains(path)) {
+            watchedDirs.remove(old.watchKey);
+            old.watchKey.cancel();
+        }
+    }
+
+    // 调用方需持有锁
+    private void evict() {
+        Iterator<Map.Entry<Path, Listing>> it = cache.entrySet().iterator();
+        while ((cache.size() > MAX_DIRS || totalEntries > MAX_TOTAL_ENTRIES) && cache.size() > 1 && it.hasNext()) {
+            Map.Entry<Path, Listing> eldest = it.next();
+            Listing old = eldest.getValue();
+            it.remove();
+            totalEntries -= old.size();
+            if (old.watchKey != null && !pinned.contains(eldest.getKey())) {
+                watchedDirs.remove(old.watchKey);
+                old.watchKey.cancel();
+            }
+        }
+    }
+}
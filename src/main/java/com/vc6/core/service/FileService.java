@@ -4,23 +4,47 @@ import com.vc6.gui.component.LogPanel;
 import com.vc6.model.AppConfig;
 import com.vc6.model.ServerMode;
 import com.vc6.model.UserSession;
+import com.vc6.model.UserTraffic;
+import com.vc6.utils.LazyChunkedFile;
+import com.vc6.utils.RangeUtils;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
+import io.netty.handler.codec.DateFormatter;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.multipart.*;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.util.CharsetUtil;
+import org.apache.commons.text.StringEscapeUtils;
 
 import java.io.File;
-import java.io.RandomAccessFile;
 import java.net.URLEncoder;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class FileService {
 
-    private final java.util.Map<String, String> extraHeaders = new java.util.HashMap<>();
+    // 非 sendfile 路径下每次从磁盘读取的块大小
+    private static final int CHUNK_SIZE = 16 * 1024;
+    // 列表接口单页上限
+    private static final int LIST_MAX_LIMIT = 1000;
+
+    // 可以有多个同名头 (如同时种下和清除几个 Cookie)
+    private final HttpHeaders extraHeaders = new DefaultHttpHeaders();
 
     public void addHeader(String name, String value) {
-        extraHeaders.put(name, value);
+        extraHeaders.add(name, value);
+    }
+
+    /**
+     * 连接复用后同一个 FileService 会处理多个请求，每个请求开始前清掉上一次附加的响应头 (如 Set-Cookie)
+     */
+    public void resetHeaders() {
+        extraHeaders.clear();
     }
+
     public File resolveFile(String uri) {
         ServerMode mode = AppConfig.getInstance().getServerMode();
 
@@ -40,45 +64,42 @@ public class FileService {
         } else if (mode == ServerMode.QUICK_SHARE) {
             String rootPath = AppConfig.getInstance().getQuickSharePath();
             String relativePath = uri.startsWith("/") ? uri.substring(1) : uri;
+            // "." 开头的是内部文件 (内容存储 .blobs、续传中的部分文件)，不对外提供
+            if (relativePath.startsWith(".") || relativePath.contains("/.") || relativePath.contains("\\.")) return null;
             return relativePath.isEmpty() ? new File(rootPath) : new File(rootPath, relativePath);
         }
 
         return null;
     }
 
-    public void handleUpload(ChannelHandlerContext ctx, FullHttpRequest req, String uri) {
-        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(new DefaultHttpDataFactory(true), req);
-        try {
-            if (decoder.isMultipart()) {
-                File uploadDir = resolveFile(uri);
-                if (!uploadDir.exists() || !uploadDir.isDirectory()) {
-                    sendError(ctx, HttpResponseStatus.BAD_REQUEST, "Invalid Dir");
-                    return;
-                }
-                while (decoder.hasNext()) {
-                    InterfaceHttpData data = decoder.next();
-                    if (data != null && data.getHttpDataType() == InterfaceHttpData.HttpDataType.FileUpload) {
-                        FileUpload fileUpload = (FileUpload) data;
-                        if (fileUpload.isCompleted()) {
-                            String fileName = fileUpload.getFilename();
-
-                            if (fileName == null || fileName.trim().isEmpty()) {
-                                continue;
-                            }
-
-                            File dest = new File(uploadDir, fileName);
-                            fileUpload.renameTo(dest);
-                            LogPanel.log("[Service] "+getCurrentUserID(ctx) +": 文件上传成功: " + dest.getName());
-                        }
-                    }
-                }
-                sendRedirect(ctx, uri);
+    /**
+     * 保存一个已接收完整的上传文件 (由 UploadStreamHandler 在流式解码过程中调用)
+     */
+    public void saveUpload(ChannelHandlerContext ctx, FileUpload fileUpload, File uploadDir) throws java.io.IOException {
+        if (!fileUpload.isCompleted()) return;
+        String fileName = fileUpload.getFilename();
+        if (fileName == null || fileName.trim().isEmpty()) return;
+
+        String name = new File(fileName).getName();
+        File dest;
+        if (AppConfig.getInstance().getServerMode() == ServerMode.QUICK_SHARE) {
+            // 快传：先落到内容存储旁的临时文件，再按内容去重收下 (同名不同内容另起名称，不覆盖)
+            QuickShareBlobs blobs = QuickShareBlobs.getInstance();
+            File temp = blobs.tempDir().resolve("upload-" + System.nanoTime() + ".tmp").toFile();
+            if (!fileUpload.renameTo(temp)) {
+                throw new java.io.IOException("Save failed: " + name);
+            }
+            dest = blobs.accept(temp.toPath(), name);
+        } else {
+            dest = new File(uploadDir, name);
+            if (!fileUpload.renameTo(dest)) {
+                throw new java.io.IOException("Save failed: " + dest.getName());
             }
-        } catch (Exception e) {
-            sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, e.getMessage());
-        } finally {
-            decoder.destroy();
         }
+        DirectoryCache.getInstance().invalidate(uploadDir);
+        SessionManager.getInstance().recordActivity(ctx.channel().attr(AuthService.SESSION_KEY).get(),
+                UserTraffic.Activity.UPLOAD, dest.length());
+        LogPanel.log("[Service] "+getCurrentUserID(ctx) +": 文件上传成功: " + dest.getName());
     }
 
     public void handleTextUpload(ChannelHandlerContext ctx, String text, String uri) {
@@ -104,6 +125,9 @@ public class FileService {
             File dest = new File(dir, filename);
 
             java.nio.file.Files.writeString(dest.toPath(), text);
+            DirectoryCache.getInstance().invalidate(dir);
+            MessagePreviewCache.getInstance().remember(dest, text);
+            QuickShareIndex.getInstance().add(dest);
             LogPanel.log("[Service] "+getCurrentUserID(ctx) +": 上传文本消息: " + (text.length() > 10 ? text.substring(0, 10)+"..." : text));
 
             sendRedirect(ctx, uri);
@@ -114,12 +138,28 @@ public class FileService {
     }
 
     public void downloadFile(ChannelHandlerContext ctx, File file, FullHttpRequest req) {
+        if (!ctx.channel().isActive()) return; // 客户端已经走了，不必再打开文件
         try {
-            RandomAccessFile raf = new RandomAccessFile(file, "r");
-            long len = raf.length();
-            HttpResponse resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
-            HttpUtil.setContentLength(resp, len);
-            resp.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/octet-stream");
+            if (!file.canRead()) throw new java.io.IOException("Unreadable: " + file);
+            long len = file.length();
+            long lastModified = file.lastModified();
+            String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(len) + "\"";
+
+            // 1. 解析 Range；If-Range 校验不通过时按完整文件返回
+            List<RangeUtils.ByteRange> ranges = null;
+            if (isIfRangeSatisfied(req.headers().get(HttpHeaderNames.IF_RANGE), etag, lastModified)) {
+                ranges = RangeUtils.parse(req.headers().get(HttpHeaderNames.RANGE), len);
+            }
+            if (ranges != null && ranges.isEmpty()) {
+                sendRangeNotSatisfiable(ctx, len);
+                return;
+            }
+
+            HttpResponse resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                    ranges == null ? HttpResponseStatus.OK : HttpResponseStatus.PARTIAL_CONTENT);
+            resp.headers().set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+            resp.headers().set(HttpHeaderNames.ETAG, etag);
+            resp.headers().set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(lastModified)));
 
             String rawName = file.getName();
             String encodedName = URLEncoder.encode(rawName, "UTF-8").replace("+", "%20");
@@ -127,25 +167,149 @@ public class FileService {
                     "attachment; filename=\"" + rawName + "\"; filename*=UTF-8''" + encodedName);
 
             if (HttpUtil.isKeepAlive(req)) resp.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
-            extraHeaders.forEach((k, v) -> resp.headers().set(k, v));
-            ctx.write(resp);
-            ctx.write(new io.netty.handler.stream.ChunkedFile(raf, 0, len, 8192), ctx.newProgressivePromise());
-            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-            LogPanel.log("[Service] "+getCurrentUserID(ctx) +": 访问文件: " + file.getName());
+            resp.headers().add(extraHeaders);
+
+            // 2. 按区间数量选择 200 / 单区间 206 / multipart/byteranges
+            if (ranges == null) {
+                HttpUtil.setContentLength(resp, len);
+                resp.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/octet-stream");
+                ctx.write(resp);
+                writeFileSlice(ctx, file, 0, len);
+            } else if (ranges.size() == 1) {
+                RangeUtils.ByteRange r = ranges.getFirst();
+                HttpUtil.setContentLength(resp, r.length());
+                resp.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/octet-stream");
+                resp.headers().set(HttpHeaderNames.CONTENT_RANGE, contentRange(r, len));
+                ctx.write(resp);
+                writeFileSlice(ctx, file, r.start(), r.length());
+            } else {
+                writeMultipartRanges(ctx, resp, file, ranges, len);
+            }
+            boolean fromStart = ranges == null || ranges.getFirst().start() == 0;
+            long bodyBytes = ranges == null ? len : ranges.stream().mapToLong(RangeUtils.ByteRange::length).sum();
+            // 写失败 (客户端取消、连接重置) 时立即关闭连接，排队中的文件分块随之释放
+            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": 下载中断: " + file.getName());
+                    f.channel().close();
+                    return;
+                }
+                SessionManager.getInstance().recordActivity(ctx.channel().attr(AuthService.SESSION_KEY).get(),
+                        fromStart ? UserTraffic.Activity.DOWNLOAD : UserTraffic.Activity.DOWNLOAD_PART, bodyBytes);
+            });
+
+            if (fromStart) {
+                LogPanel.log("[Service] "+getCurrentUserID(ctx) +": 访问文件: " + file.getName());
+            }
 
         } catch (Exception e) {
             sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Download error");
         }
     }
 
-    public void sendHtml(ChannelHandlerContext ctx, String content) {
-        FullHttpResponse response = new DefaultFullHttpResponse(
-                HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
-                Unpooled.copiedBuffer(content, CharsetUtil.UTF_8)
-        );
-        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/html; charset=UTF-8");
-        extraHeaders.forEach((k, v) -> response.headers().set(k, v));
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    /**
+     * multipart/byteranges：每个区间前写一段分隔头，最后写结束边界
+     */
+    private void writeMultipartRanges(ChannelHandlerContext ctx, HttpResponse resp, File file,
+                                      List<RangeUtils.ByteRange> ranges, long len) {
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        String[] partHeads = new String[ranges.size()];
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        long total = tail.length();
+        for (int i = 0; i < ranges.size(); i++) {
+            RangeUtils.ByteRange r = ranges.get(i);
+            partHeads[i] = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: application/octet-stream\r\n"
+                    + "Content-Range: " + contentRange(r, len) + "\r\n\r\n";
+            total += partHeads[i].length() + r.length();
+        }
+
+        HttpUtil.setContentLength(resp, total);
+        resp.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        ctx.write(resp);
+        for (int i = 0; i < ranges.size(); i++) {
+            RangeUtils.ByteRange r = ranges.get(i);
+            ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer(partHeads[i], CharsetUtil.US_ASCII)));
+            writeFileSlice(ctx, file, r.start(), r.length());
+        }
+        ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer(tail, CharsetUtil.US_ASCII)));
+    }
+
+    /**
+     * 写出文件的一段：明文 HTTP 走 sendfile，否则分块读取
+     * 两种方式都延迟到真正传输时才打开文件，且都经过 ChunkedWriteHandler 排队，
+     * 只有 Channel 可写 (低于写水位) 时才继续推进，慢速客户端不会让出站缓冲无限膨胀
+     */
+    private void writeFileSlice(ChannelHandlerContext ctx, File file, long start, long count) {
+        if (isZeroCopyCapable(ctx)) {
+            ctx.write(new DefaultFileRegion(file, start, count));
+        } else {
+            ctx.write(new LazyChunkedFile(file, start, count, CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * If-Range 可以是 ETag 或 HTTP 日期；不存在时视为通过
+     */
+    private boolean isIfRangeSatisfied(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) return true;
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag); // 必须是强校验
+        }
+        Date date = DateFormatter.parseHttpDate(ifRange);
+        return date != null && date.getTime() / 1000 == lastModified / 1000;
+    }
+
+    private void sendRangeNotSatisfiable(ChannelHandlerContext ctx, long len) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + len);
+        writeResponse(ctx, response);
+    }
+
+    private static String contentRange(RangeUtils.ByteRange r, long len) {
+        return "bytes " + r.start() + "-" + r.end() + "/" + len;
+    }
+
+    /**
+     * 只有当管道中没有需要改写字节的处理器时，才能把文件直接交给 sendfile
+     * HTTP/2 流需要把数据切成 DATA 帧，同样不能使用 FileRegion
+     */
+    private boolean isZeroCopyCapable(ChannelHandlerContext ctx) {
+        if (ctx.channel() instanceof Http2StreamChannel) return false;
+        ChannelPipeline p = ctx.pipeline();
+        return p.get(SslHandler.class) == null && p.get(HttpContentCompressor.class) == null;
+    }
+
+    /**
+     * 所有完整响应的统一出口：补齐 Content-Length 与附加头，连接是否复用交给 HttpServerKeepAliveHandler
+     */
+    public void writeResponse(ChannelHandlerContext ctx, FullHttpResponse response) {
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        response.headers().add(extraHeaders);
+        ctx.writeAndFlush(response);
+    }
+
+    /**
+     * 页面输出：生成器直接写入 HtmlStream，大页面边生成边发送
+     */
+    public void sendHtml(ChannelHandlerContext ctx, java.util.function.Consumer<HtmlStream> page) {
+        HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        head.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/html; charset=UTF-8");
+        head.headers().add(extraHeaders);
+
+        HtmlStream out = new HtmlStream(ctx, head);
+        try {
+            page.accept(out);
+        } catch (RuntimeException e) {
+            LogPanel.log("[Error] 页面生成失败: " + e);
+            // 已经发出部分内容时无法再改成错误页，只能断开
+            if (out.abort()) ctx.close();
+            else sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Render Error");
+            return;
+        }
+        out.finish();
     }
 
     public void sendRedirect(ChannelHandlerContext ctx, String newUrl) {
@@ -163,52 +327,83 @@ public class FileService {
         } catch (Exception e) {
             response.headers().set(HttpHeaderNames.LOCATION, newUrl);
         }
-        extraHeaders.forEach((k, v) -> response.headers().set(k, v));
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        writeResponse(ctx, response);
     }
 
     public void sendError(ChannelHandlerContext ctx, HttpResponseStatus status, String msg) {
+        sendError(ctx, status, msg, false);
+    }
+
+    /**
+     * @param close 请求体未读完或连接状态不可信时为 true，响应带 Connection: close 并在写完后断开
+     */
+    public void sendError(ChannelHandlerContext ctx, HttpResponseStatus status, String msg, boolean close) {
         FullHttpResponse response = new DefaultFullHttpResponse(
                 HttpVersion.HTTP_1_1, status,
                 Unpooled.copiedBuffer("Error: " + status + " " + msg + "\r\n", CharsetUtil.UTF_8)
         );
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8");
-        extraHeaders.forEach((k, v) -> response.headers().set(k, v));
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        if (close) HttpUtil.setKeepAlive(response, false);
+        writeResponse(ctx, response);
     }
 
-    public void serveStatic(ChannelHandlerContext ctx, String rawUri) {
-        // 1. 映射路径：/static/xxx -> resources/static/xxx
-        // 注意：getResourceAsStream 需要以 / 开头，代表从 classpath 根目录找
-        String uri = rawUri.contains("?") ? rawUri.split("\\?")[0] : rawUri;
-        try (java.io.InputStream is = getClass().getResourceAsStream(uri)) {
-            if (is == null) {
-                sendError(ctx, HttpResponseStatus.NOT_FOUND, "Static resource not found");
-                return;
-            }
-
-            byte[] bytes = is.readAllBytes();
-            FullHttpResponse response = new DefaultFullHttpResponse(
-                    HttpVersion.HTTP_1_1, HttpResponseStatus.OK, io.netty.buffer.Unpooled.wrappedBuffer(bytes));
+    /**
+     * 静态资源：内存缓存 + 强 ETag；带版本号 (?v=...) 的 URL 内容永不变化，允许浏览器长期缓存
+     */
+    public void serveStatic(ChannelHandlerContext ctx, HttpRequest req) {
+        QueryStringDecoder qsd = new QueryStringDecoder(req.uri());
+        StaticAssetCache.Asset asset = StaticAssetCache.getInstance().get(qsd.path());
+        if (asset == null) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Static resource not found");
+            return;
+        }
 
-            // 2. 设置正确的 Content-Type (非常重要，否则样式无效)
-            String mimeType = "application/octet-stream";
-            if (uri.endsWith(".css")) mimeType = "text/css";
-            else if (uri.endsWith(".js")) mimeType = "application/javascript";
-            else if (uri.endsWith(".woff")) mimeType = "font/woff";
-            else if (uri.endsWith(".woff2")) mimeType = "font/woff2";
-            else if (uri.endsWith(".png")) mimeType = "image/png";
-            else if (uri.endsWith(".json")) mimeType = "application/json";
+        boolean useGzip = asset.gzip() != null && acceptsGzip(req.headers().get(HttpHeaderNames.ACCEPT_ENCODING));
+        // 不同编码是不同的表示，ETag 需要区分
+        String etag = useGzip ? asset.etag().substring(0, asset.etag().length() - 1) + "-gz\"" : asset.etag();
 
-            response.headers().set(HttpHeaderNames.CONTENT_TYPE, mimeType);
-            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        FullHttpResponse response;
+        String ifNoneMatch = req.headers().get(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+        } else {
+            ByteBuf body = (useGzip ? asset.gzip() : asset.identity()).retainedDuplicate();
+            response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, body);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, asset.mimeType());
+            if (useGzip) response.headers().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+        }
+        response.headers().set(HttpHeaderNames.ETAG, etag);
+        if (asset.gzip() != null) response.headers().set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        // 只有当前内容的版本号才能永久缓存；旧版本号或其它参数仍需向服务端确认
+        response.headers().set(HttpHeaderNames.CACHE_CONTROL,
+                asset.version().equals(queryParam(qsd, "v", null)) ? "public, max-age=31536000, immutable" : "no-cache");
+        writeResponse(ctx, response);
+    }
 
-            extraHeaders.forEach((k, v) -> response.headers().set(k, v));
-            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
-        } catch (Exception e) {
-            sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Static load error");
+    // Accept-Encoding 中 gzip (或 *) 的 q 值大于 0，"gzip;q=0" 表示明确拒绝
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        double gzip = -1, any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) gzip = q;
+            else if (coding.equals("*")) any = q;
         }
+        return gzip >= 0 ? gzip > 0 : any > 0;
     }
+
     public void handleMkdir(ChannelHandlerContext ctx, String baseUri, String folderName) {
         if (folderName == null || folderName.trim().isEmpty()) {
             sendRedirect(ctx, baseUri);
@@ -220,6 +415,7 @@ public class FileService {
             File newDir = new File(currentDir, folderName);
             if (!newDir.exists()) {
                 boolean success = newDir.mkdir();
+                DirectoryCache.getInstance().invalidate(currentDir);
                 LogPanel.log("[Service] "+getCurrentUserID(ctx) +(success ? ": 新建文件夹: " + newDir.getName() : ": 新建文件夹失败"));
             }
         }
@@ -227,8 +423,14 @@ public class FileService {
     }
     public void handleDelete(ChannelHandlerContext ctx, String uri) {
         File file = resolveFile(uri);
+        if (file == null) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Not Found");
+            return;
+        }
         // 调用递归删除
         if (file.exists() && deleteRecursive(file)) {
+            DirectoryCache.getInstance().invalidate(file);
+            QuickShareIndex.getInstance().remove(file, false);
 
             if (AppConfig.getInstance().getServerMode() == ServerMode.QUICK_SHARE) {
                 sendRedirect(ctx, "/");
@@ -245,6 +447,23 @@ public class FileService {
             sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Delete failed");
         }
     }
+    /**
+     * 单独设置快传条目的保留时长 (小时)：0 为永不清理，-1 为跟随全局设置
+     */
+    public void handleExpire(ChannelHandlerContext ctx, String uri, int hours) {
+        if (AppConfig.getInstance().getServerMode() != ServerMode.QUICK_SHARE) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Not Found");
+            return;
+        }
+        File file = resolveFile(uri);
+        if (file == null || !QuickShareIndex.getInstance().setExpireHours(file, hours)) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Not Found");
+            return;
+        }
+        LogPanel.log("[Service] " + getCurrentUserID(ctx) + ": " + file.getName()
+                + (hours == 0 ? " 已固定" : hours < 0 ? " 已取消固定" : " 保留 " + hours + " 小时"));
+        sendRedirect(ctx, "/");
+    }
     private boolean deleteRecursive(File file) {
         if (file.isDirectory()) {
             File[] children = file.listFiles();
@@ -276,6 +495,150 @@ public class FileService {
         return user.getUserId();
     }
 
+    /**
+     * 目录列表 JSON 接口：GET /api/list?path=&sort=name|size|mtime&order=asc|desc&q=&limit=&cursor=
+     * 游标是上一页最后一项的排序键 (而不是偏移量)，翻页期间目录有增删也不会重复或漏项
+     */
+    public void sendListing(ChannelHandlerContext ctx, QueryStringDecoder qsd) {
+        String path = queryParam(qsd, "path", "/");
+        File dir = path.contains("..") ? null : resolveFile(path);
+        DirectoryCache.Listing listing = (dir == null || !dir.isDirectory()) ? null : DirectoryCache.getInstance().get(dir);
+        if (listing == null) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Not a directory");
+            return;
+        }
+
+        DirectoryCache.SortKey key = DirectoryCache.SortKey.fromParam(queryParam(qsd, "sort", null));
+        boolean desc = "desc".equalsIgnoreCase(queryParam(qsd, "order", "asc"));
+        String filter = queryParam(qsd, "q", "").trim().toLowerCase();
+        int limit;
+        try {
+            limit = Math.max(1, Math.min(LIST_MAX_LIMIT, Integer.parseInt(queryParam(qsd, "limit", "200"))));
+        } catch (NumberFormatException e) {
+            limit = 200;
+        }
+
+        List<DirectoryCache.Entry> sorted = listing.sorted(key, desc);
+        int start = 0;
+        DirectoryCache.Entry after = decodeCursor(queryParam(qsd, "cursor", null));
+        if (after != null) {
+            int i = java.util.Collections.binarySearch(sorted, after, key.comparator(desc));
+            start = i >= 0 ? i + 1 : -i - 1;
+        }
+
+        String base = path.endsWith("/") ? path : path + "/";
+        StringBuilder json = new StringBuilder(128 + limit * 128);
+        json.append("{\"path\":\"").append(StringEscapeUtils.escapeJson(path)).append("\",\"items\":[");
+        int total = 0, count = 0;
+        DirectoryCache.Entry last = null;
+        boolean more = false;
+        for (int i = 0; i < sorted.size(); i++) {
+            DirectoryCache.Entry e = sorted.get(i);
+            if (!e.isVisible() || (!filter.isEmpty() && !e.name().toLowerCase().contains(filter))) continue;
+            total++;
+            if (i < start) continue;
+            if (count == limit) {
+                more = true;
+                continue;
+            }
+            if (count++ > 0) json.append(',');
+            json.append("{\"name\":\"").append(StringEscapeUtils.escapeJson(e.name()))
+                    .append("\",\"href\":\"").append(StringEscapeUtils.escapeJson(HtmlGenerator.encodeUrl(base + e.name())))
+                    .append("\",\"dir\":").append(e.directory())
+                    .append(",\"size\":").append(e.directory() ? 0 : e.length())
+                    .append(",\"mtime\":").append(e.lastModified()).append('}');
+            last = e;
+        }
+        json.append("],\"total\":").append(total).append(",\"next\":");
+        json.append(more ? "\"" + encodeCursor(last) + "\"" : "null").append('}');
+
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(json, CharsetUtil.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=UTF-8");
+        response.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-store");
+        writeResponse(ctx, response);
+    }
+
+    /**
+     * 文本消息全文：GET /api/text/{id}，id 为 .lanmsg 文件名去掉扩展名 (时间轴只带摘要，复制时再取全文)
+     */
+    public void sendMessageText(ChannelHandlerContext ctx, String id) {
+        File file = null;
+        if (AppConfig.getInstance().getServerMode() == ServerMode.QUICK_SHARE
+                && !id.isEmpty() && !id.contains("/") && !id.contains("\\") && !id.contains("..")) {
+            file = resolveFile("/" + id + ".lanmsg");
+        }
+        if (file == null || !file.isFile()) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Message not found");
+            return;
+        }
+        try {
+            byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.wrappedBuffer(bytes));
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8");
+            response.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+            writeResponse(ctx, response);
+        } catch (java.io.IOException e) {
+            sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Read Failed");
+        }
+    }
+
+    /**
+     * 快传时间轴推送：GET /api/feed/events (text/event-stream)，连接保持打开
+     */
+    public void openFeedStream(ChannelHandlerContext ctx) {
+        if (AppConfig.getInstance().getServerMode() != ServerMode.QUICK_SHARE) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Feed not available");
+            return;
+        }
+        HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        head.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/event-stream; charset=UTF-8");
+        head.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+        HttpUtil.setTransferEncodingChunked(head, true);
+        head.headers().add(extraHeaders);
+        QuickShareFeed.getInstance().subscribe(ctx.channel(), head);
+    }
+
+    /**
+     * 时间轴单行 HTML：GET /api/feed/item?name=，收到新增推送后由页面取回插入
+     */
+    public void sendFeedItem(ChannelHandlerContext ctx, String name) {
+        File file = null;
+        if (AppConfig.getInstance().getServerMode() == ServerMode.QUICK_SHARE && name != null
+                && !name.isEmpty() && !name.contains("/") && !name.contains("\\") && !name.contains("..")) {
+            file = resolveFile("/" + name);
+        }
+        if (file == null || !file.exists()) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, "Item not found");
+            return;
+        }
+        File item = file;
+        sendHtml(ctx, out -> HtmlGenerator.generateFeedItem(out, item));
+    }
+
+    private static String queryParam(QueryStringDecoder qsd, String name, String def) {
+        List<String> values = qsd.parameters().get(name);
+        return values == null || values.isEmpty() ? def : values.getFirst();
+    }
+
+    // 游标内容：是否目录、大小、修改时间、名称 (覆盖所有排序方式用到的字段)
+    private static String encodeCursor(DirectoryCache.Entry e) {
+        String raw = (e.directory() ? "1" : "0") + "\n" + e.length() + "\n" + e.lastModified() + "\n" + e.name();
+        return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private static DirectoryCache.Entry decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return null;
+        try {
+            String[] parts = new String(java.util.Base64.getUrlDecoder().decode(cursor), CharsetUtil.UTF_8).split("\n", 4);
+            return new DirectoryCache.Entry(null, parts[3], "1".equals(parts[0]), false, true,
+                    Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (Exception e) {
+            return null; // 无效游标从头开始
+        }
+    }
+
     public void sendManifest(ChannelHandlerContext ctx) {
         // 获取当前你在设置里配的设备名称
         String appName = AppConfig.getInstance().getdeviceName();
@@ -311,8 +674,7 @@ public class FileService {
                 Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
         );
         response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=UTF-8");
-        extraHeaders.forEach((k, v) -> response.headers().set(k, v));
-        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        writeResponse(ctx, response);
     }
 
 }
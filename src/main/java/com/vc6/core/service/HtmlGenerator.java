@@ -4,11 +4,10 @@ import com.vc6.model.AppConfig;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Date;
-import org.apache.commons.text.StringEscapeUtils;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
 
 public class HtmlGenerator {
 
@@ -89,6 +88,7 @@ public class HtmlGenerator {
                 pointer-events: none; z-index: 10000;
             }
             #web-toast.show { opacity: 1; }
+            .vrow { position: absolute; left: 0; right: 0; height: 58px; }
             </style>
     """;
 
@@ -106,6 +106,8 @@ public class HtmlGenerator {
                      const content = doc.getElementById('main-content');
                      if (content) {
                           document.getElementById('main-content').innerHTML = content.innerHTML;
+                          initFileList();
+                          initFeed();
                      } else {
                           location.reload();
                      }
@@ -115,6 +117,123 @@ public class HtmlGenerator {
                  });
              }
             window.onpopstate = () => location.reload();
+
+            // --- 目录列表：按页从 /api/list 拉取，只渲染可视区域附近的行 ---
+            const ROW_H = 58, PAGE = 200, OVERSCAN = 10;
+            let vl = null, vlFrame = 0, filterTimer = 0;
+            function initFileList() {
+                const box = document.getElementById('file-list');
+                if (!box) { vl = null; return; }
+                vl = { box: box, path: box.dataset.path, write: box.dataset.write === '1', items: [], total: 0, next: null,
+                       sort: 'name', order: 'asc', q: '', loading: false, seq: 0, first: -1, last: -1 };
+                loadMore(true, 0);
+            }
+            function loadMore(reset, want) {
+                const s = vl;
+                if (!s) return;
+                if (reset) { s.items = []; s.total = 0; s.next = null; s.seq++; }
+                else if (s.loading || !s.next) return;
+                const seq = s.seq;
+                s.loading = true;
+                let url = '/api/list?path=' + encodeURIComponent(s.path) + '&sort=' + s.sort + '&order=' + s.order
+                        + '&q=' + encodeURIComponent(s.q) + '&limit=' + Math.min(1000, Math.max(PAGE, want));
+                if (s.next) url += '&cursor=' + s.next;
+                fetch(url).then(r => r.json()).then(d => {
+                    if (s !== vl || seq !== s.seq) return; // 目录、排序或筛选已变化，丢弃过期结果
+                    s.items.push(...d.items);
+                    s.total = d.total;
+                    s.next = d.next;
+                    s.loading = false;
+                    s.first = -1;
+                    renderList();
+                }).catch(e => {
+                    if (seq === s.seq) s.loading = false;
+                    console.error("List Error", e);
+                });
+            }
+            function renderList() {
+                const s = vl;
+                if (!s) return;
+                if (s.total === 0) {
+                    s.box.style.height = 'auto';
+                    s.box.innerHTML = s.loading ? '' : `<div class="list-group-item text-center text-secondary py-4">${s.q ? '没有匹配的文件' : '空文件夹'}</div>`;
+                    return;
+                }
+                s.box.style.height = (s.total * ROW_H) + 'px';
+                const top = s.box.getBoundingClientRect().top;
+                const first = Math.max(0, Math.floor(-top / ROW_H) - OVERSCAN);
+                let last = Math.min(s.total, Math.ceil((window.innerHeight - top) / ROW_H) + OVERSCAN);
+                // 可视区域超出已加载部分 (如直接拖动滚动条)，一次拉够缺少的行
+                if (last > s.items.length) {
+                    loadMore(false, last - s.items.length);
+                    last = s.items.length;
+                }
+                if (first === s.first && last === s.last) return;
+                s.first = first;
+                s.last = last;
+                let html = '';
+                for (let i = first; i < last; i++) html += rowHtml(s.items[i], i);
+                s.box.innerHTML = html;
+            }
+            function scheduleRender() {
+                if (!vlFrame) vlFrame = requestAnimationFrame(() => { vlFrame = 0; renderList(); });
+            }
+            window.addEventListener('scroll', scheduleRender, { passive: true });
+            window.addEventListener('resize', () => { if (vl) vl.first = -1; scheduleRender(); });
+            function rowHtml(f, i) {
+                const icon = f.dir ? 'bi-folder-fill text-warning' : 'bi-file-earmark-text text-secondary';
+                const dl = f.dir ? '' : `<a href="${f.href}" download class="btn-action"><i class="bi bi-download"></i></a>`;
+                const del = vl.write ? `<a href="javascript:void(0)" onclick="delItem(${i})" class="btn-action btn-del"><i class="bi bi-trash3"></i></a>` : '';
+                return `<div class="list-group-item d-flex align-items-center py-2 vrow" style="top:${i * ROW_H}px">
+                    <i class="bi ${icon} fs-4 me-3 flex-shrink-0"></i>
+                    <div class="flex-grow-1" style="min-width: 0;">
+                        <a href="javascript:void(0)" onclick="openItem(${i})" class="file-name d-block text-truncate">${escHtml(f.name)}</a>
+                        <div class="file-meta text-truncate">${fmtTime(f.mtime)} &nbsp; ${f.dir ? '' : fmtSize(f.size)}</div>
+                    </div>
+                    <div class="ms-3 d-flex gap-2 flex-shrink-0">${dl}${del}</div>
+                </div>`;
+            }
+            function openItem(i) {
+                const f = vl.items[i];
+                if (f.dir) navigate(f.href);
+                else preview(f.href, extType(f.name), f.name, f.size);
+            }
+            function delItem(i) {
+                const f = vl.items[i];
+                if (confirm(`确定删除 ${f.name} 吗？（该操作不可逆！）`)) navigate(f.href + '?action=delete');
+            }
+            function onListFilter(v) {
+                clearTimeout(filterTimer);
+                filterTimer = setTimeout(() => { if (vl) { vl.q = v.trim(); loadMore(true, 0); } }, 250);
+            }
+            function onListSort(v) {
+                if (vl) { vl.sort = v; loadMore(true, 0); }
+            }
+            function toggleListOrder(btn) {
+                if (!vl) return;
+                vl.order = vl.order === 'asc' ? 'desc' : 'asc';
+                btn.querySelector('i').className = 'bi ' + (vl.order === 'asc' ? 'bi-sort-down-alt' : 'bi-sort-up');
+                loadMore(true, 0);
+            }
+            // 与服务端 getExt 保持一致
+            function extType(n) {
+                n = n.toLowerCase();
+                if (/[.](jpg|png|gif|jpeg|webp)$/.test(n)) return 'img';
+                if (/[.](txt|log|java|py|htm|html|css|js|json|xml|yaml|yml|md|c|cpp|properties|sh|h|)$/.test(n)) return 'txt';
+                return 'bin';
+            }
+            function fmtSize(l) {
+                if (l < 1024) return l + ' B';
+                const e = Math.floor(Math.log(l) / Math.log(1024));
+                return (l / Math.pow(1024, e)).toFixed(1) + ' ' + 'KMGTPE'.charAt(e - 1) + 'B';
+            }
+            function fmtTime(t) {
+                const d = new Date(t), p = n => String(n).padStart(2, '0');
+                return `${d.getFullYear()}-${p(d.getMonth() + 1)}-${p(d.getDate())}  ${p(d.getHours())}:${p(d.getMinutes())}:${p(d.getSeconds())}`;
+            }
+            function escHtml(s) {
+                return s.replace(/&/g, '&amp;').replace(/</g, '&lt;').replace(/>/g, '&gt;').replace(/"/g, '&quot;');
+            }
             function showToast(msg) {
                 const t = document.getElementById('web-toast');
                 t.innerText = msg;
@@ -139,6 +258,43 @@ public class HtmlGenerator {
                     document.body.removeChild(ta);
                 }
             }
+            function copyMessage(id) {
+                fetch('/api/text/' + id)
+                    .then(r => r.ok ? r.text() : Promise.reject(r.status))
+                    .then(t => copy(t))
+                    .catch(() => showToast('读取消息失败'));
+            }
+            // --- 快传时间轴：订阅服务端推送，增删单行而不是整页刷新 ---
+            let feedSource = null;
+            function initFeed() {
+                if (feedSource || !document.getElementById('feed-list') || !window.EventSource) return;
+                let opened = false;
+                feedSource = new EventSource('/api/feed/events');
+                feedSource.onopen = () => {
+                    // 断线重连期间可能错过事件，重新拉取一次整页
+                    if (opened) navigate(location.pathname);
+                    opened = true;
+                };
+                feedSource.addEventListener('added', e => {
+                    const name = JSON.parse(e.data).name;
+                    fetch('/api/feed/item?name=' + encodeURIComponent(name))
+                        .then(r => r.ok ? r.text() : '')
+                        .then(html => {
+                            const list = document.getElementById('feed-list');
+                            if (!html || !list) return;
+                            removeFeedRow(name);
+                            list.insertAdjacentHTML('afterbegin', html);
+                        });
+                });
+                const onRemoved = e => removeFeedRow(JSON.parse(e.data).name);
+                feedSource.addEventListener('deleted', onRemoved);
+                feedSource.addEventListener('expired', onRemoved);
+            }
+            function removeFeedRow(name) {
+                const list = document.getElementById('feed-list');
+                const row = list && list.querySelector(`[data-name="${CSS.escape(name)}"]`);
+                if (row) row.remove();
+            }
             function preview(url, type, name, size) {
                  const modal = new bootstrap.Modal(document.getElementById('previewModal'));
                  const header = document.querySelector('#previewModal .modal-header');
@@ -189,6 +345,10 @@ public class HtmlGenerator {
                  }
                  modal.show();
              }
+            // 分块续传：每块单独 PATCH，几块并行；断网后按服务端已收到的区间补传，刷新页面后也能接着传
+            const CHUNK_SIZE = 4 * 1024 * 1024;
+            const PARALLEL = 3;
+            const MAX_RETRIES = 8;
             async function doUpload(fileList) {
                   if (!fileList.length) return;
                   const maxBytes = window.MAX_FILE_SIZE_MB * 1024 * 1024;
@@ -198,49 +358,28 @@ public class HtmlGenerator {
                   const nameLabel = document.getElementById('task-name');
   
                   panel.style.display = 'block';
+                  let uploadDir = window.location.pathname;
+                  if (!uploadDir.endsWith('/')) uploadDir += '/';
   
-                  // 逐个上传
+                  // 逐个文件上传，文件内部分块并行
                   for (let i = 0; i < fileList.length; i++) {
                       const file = fileList[i];
                       nameLabel.innerText = `(${i + 1}/${fileList.length}) ${file.name}`;
-                      console.log(file.size);
                       if (file.size > maxBytes) {
                           alert(`文件大小超出限制！\\n"${file.name}"\\n当前文件大小: ${(file.size/1024/1024).toFixed(2)} MB\\n限制: ${window.MAX_FILE_SIZE_MB} MB`);
                           continue; 
                       }
-                      // 等待单个文件上传完成
-                      await new Promise((resolve, reject) => {
-                          const fd = new FormData();
-                          fd.append("file", file);
-                          const xhr = new XMLHttpRequest();
-                         \s
-                          let uploadUrl = window.location.pathname;
-                          if (!uploadUrl.endsWith('/')) uploadUrl += '/';
-  
-                          xhr.open("POST", uploadUrl, true);
-                          xhr.upload.onprogress = (e) => {
-                              if (e.lengthComputable) {
-                                  let p = Math.round((e.loaded / e.total) * 100);
-                                  // 【关键修复】确保这里是双百分号，用于 Java 转义
-                                  bar.style.width = p + '%%';
-                                  percent.innerText = p + '%%';
-                              }
-                          };
-                          xhr.onload = () => resolve();
-                          xhr.onerror = () => {
-                              console.warn("XHR Error:", file.name);
-                              alert(file.name + ' 上传失败！不允许上传文件夹！');
-                              resolve(); 
-                          };
-                          try {
-                              xhr.send(fd);
-                          } catch (e) {
-                              console.warn("Upload blocked:", e);
-                              panel.style.display = 'none';
-                              alert(file.name + ' 上传失败！');
-                              resolve(); 
-                          }
-                      });
+                      bar.style.width = '0%';
+                      percent.innerText = '0%';
+                      try {
+                          await resumableUpload(file, uploadDir, p => {
+                              bar.style.width = p + '%';
+                              percent.innerText = p + '%';
+                          });
+                      } catch (e) {
+                          console.warn("Upload failed:", file.name, e);
+                          alert(file.name + ' 上传失败！' + (e.message || ''));
+                      }
                   }
   
                   // 全部完成后刷新
@@ -250,6 +389,90 @@ public class HtmlGenerator {
                       panel.style.display = 'none';
                   }, 1000);
               }
+
+            async function resumableUpload(file, dir, onProgress) {
+                  const key = 'upload:' + dir + '|' + file.name + '|' + file.size + '|' + file.lastModified;
+                  const b64 = s => btoa(unescape(encodeURIComponent(s)));
+                  let url = localStorage.getItem(key);
+                  let done = [];
+                  // 1. 之前传过一部分：问服务端已经收到了哪些区间
+                  if (url) {
+                      const r = await fetch(url, { method: 'HEAD', cache: 'no-store' }).catch(() => null);
+                      if (r && r.ok) {
+                          done = (r.headers.get('Upload-Ranges') || '').split(',').filter(Boolean)
+                              .map(x => x.split('-').map(Number));
+                      } else {
+                          url = null;
+                      }
+                  }
+                  // 2. 否则登记一次新的上传
+                  if (!url) {
+                      const r = await fetch('/api/upload', { method: 'POST', headers: {
+                          'Upload-Length': String(file.size),
+                          'Upload-Metadata': 'filename ' + b64(file.name) + ',dir ' + b64(dir)
+                      }});
+                      if (!r.ok) throw new Error((await r.text()).trim());
+                      url = r.headers.get('Location');
+                      localStorage.setItem(key, url);
+                  }
+
+                  // 3. 只传还缺的块
+                  const queue = [];
+                  for (let s = 0; s < file.size; s += CHUNK_SIZE) {
+                      const e = Math.min(s + CHUNK_SIZE, file.size);
+                      if (!done.some(([a, b]) => a <= s && b >= e)) queue.push([s, e]);
+                  }
+                  let confirmed = file.size - queue.reduce((n, [s, e]) => n + e - s, 0);
+                  const inflight = new Map();
+                  const report = () => {
+                      let loaded = confirmed;
+                      inflight.forEach(v => loaded += v);
+                      onProgress(file.size ? Math.floor(loaded * 100 / file.size) : 100);
+                  };
+                  report();
+
+                  const sendChunk = (s, e) => new Promise((resolve, reject) => {
+                      const xhr = new XMLHttpRequest();
+                      xhr.open('PATCH', url, true);
+                      xhr.setRequestHeader('Upload-Offset', String(s));
+                      xhr.setRequestHeader('Content-Type', 'application/offset+octet-stream');
+                      xhr.upload.onprogress = ev => { inflight.set(s, ev.loaded); report(); };
+                      xhr.onload = () => xhr.status === 204 ? resolve() : reject({ status: xhr.status });
+                      xhr.onerror = () => reject({ status: 0 });
+                      xhr.send(file.slice(s, e));
+                  });
+                  const worker = async () => {
+                      while (queue.length) {
+                          const [s, e] = queue.shift();
+                          for (let attempt = 0; ; attempt++) {
+                              try {
+                                  await sendChunk(s, e);
+                                  break;
+                              } catch (err) {
+                                  inflight.delete(s);
+                                  report();
+                                  // 4xx 重试也没用 (上传已失效、无权限等)；网络错误与 5xx 退避后重试
+                                  if ((err.status >= 400 && err.status < 500) || attempt >= MAX_RETRIES) {
+                                      queue.length = 0;
+                                      throw new Error(err.status ? 'HTTP ' + err.status : '网络错误');
+                                  }
+                                  await new Promise(r => setTimeout(r, Math.min(30000, 1000 * 2 ** attempt)));
+                              }
+                          }
+                          inflight.delete(s);
+                          confirmed += e - s;
+                          report();
+                      }
+                  };
+                  try {
+                      await Promise.all(Array.from({ length: PARALLEL }, worker));
+                  } catch (e) {
+                      // 上传已在服务端失效：下次从头开始
+                      if (/HTTP 4/.test(e.message)) localStorage.removeItem(key);
+                      throw e;
+                  }
+                  localStorage.removeItem(key);
+              }
               
             function checkSubmit(e) {
                 if (e.ctrlKey && e.key === 'Enter') {
@@ -382,24 +605,26 @@ public class HtmlGenerator {
                     }
                 }
             });
+            initFileList();
+            initFeed();
         </script>
     """;
 
-    // --- 内部 Shell 辅助 ---
-    private static String getHead(String subtitle, String nickname) {
-        String badgeText = (nickname != null && !nickname.isEmpty()) ? nickname : subtitle;
-        String appTitle = AppConfig.getInstance().getdeviceName(); // 获取动态设备名
+    // --- 页面模板 (首次使用时编译一次，之后所有页面共享) ---
+
+    private static final class Templates {
+        private static final StaticAssetCache ASSETS = StaticAssetCache.getInstance();
 
-        // 注意：String.format 里的顺序是：1.网页标题 2.iOS桌面标题 3.CSS样式 4.导航栏文字 5.右侧徽章文字
-        return String.format("""
+        // 参数：网页标题/iOS桌面标题/导航栏文字 (均为设备名)、右侧徽章文字，其余为带版本号的静态资源地址
+        static final HtmlTemplate HEAD = HtmlTemplate.compile("""
             <!DOCTYPE html>
             <html lang="zh-CN" data-bs-theme="dark">
             <head>
                 <meta charset="utf-8">
                 <!-- 禁用缩放，呈现原生 App 体验 -->
                 <meta name="viewport" content="width=device-width, initial-scale=1.0, maximum-scale=1.0, user-scalable=no">
-                <title>%s</title>
-                <link rel="icon" href="/static/icon.png" />
+                <title>{{title}}</title>
+                <link rel="icon" href="{{raw:icon}}" />
                 
                 <!-- 指向刚才我们在 Netty 中拦截的动态路径 -->
                 <link rel="manifest" href="/manifest.json">
@@ -408,12 +633,12 @@ public class HtmlGenerator {
                 <!-- 苹果 iOS 专属 PWA 动态名称支持 -->
                 <meta name="apple-mobile-web-app-capable" content="yes">
                 <meta name="apple-mobile-web-app-status-bar-style" content="black-translucent">
-                <meta name="apple-mobile-web-app-title" content="%s">
-                <link rel="apple-touch-icon" href="/static/icon.png">
+                <meta name="apple-mobile-web-app-title" content="{{title}}">
+                <link rel="apple-touch-icon" href="{{raw:icon}}">
                 
-                <link href="/static/bootstrap.min.css" rel="stylesheet">
-                <link href="/static/bootstrap-icons.css" rel="stylesheet">
-                %s
+                <link href="{{raw:css}}" rel="stylesheet">
+                <link href="{{raw:icons}}" rel="stylesheet">
+            """ + CUSTOM_CSS + """
             </head>
             <body>
                 <div id="drop-overlay">
@@ -425,30 +650,28 @@ public class HtmlGenerator {
                 </div>
                 <nav class="navbar navbar-dark sticky-top shadow-sm">
                     <div class="container-fluid px-4">
-                        <a class="navbar-brand fw-bold" href="/"><i class="bi bi-hdd-network text-primary me-2"></i>%s</a>
-                        <span class="badge bg-primary-subtle text-primary border border-primary-subtle px-3">%s</span>
+                        <a class="navbar-brand fw-bold" href="/"><i class="bi bi-hdd-network text-primary me-2"></i>{{title}}</a>
+                        <span class="badge bg-primary-subtle text-primary border border-primary-subtle px-3">{{badge}}</span>
                     </div>
                 </nav>
                 <div class="container my-4" style="max-width: 900px;" id="main-content">
-            """, appTitle, appTitle, CUSTOM_CSS, appTitle, badgeText);
-    }
-
-    private static String getFoot() {
+            """, "title", "badge", "icon", "css", "icons");
+        static final String ICON_URL = ASSETS.url("/static/icon.png");
+        static final String CSS_URL = ASSETS.url("/static/bootstrap.min.css");
+        static final String ICONS_URL = ASSETS.url("/static/bootstrap-icons.css");
 
-        long maxMb = AppConfig.getInstance().getMaxFileSizeMb();
-        long maxLen = AppConfig.getInstance().getMaxTextLength();
-        return String.format("""
+        static final HtmlTemplate FOOT = HtmlTemplate.compile("""
             </div>
             
             <div id="progress-fixed" class="card shadow-lg border-primary">
                   <div class="card-body py-2">
                       <div class="d-flex justify-content-between mb-1 small fw-bold">
                           <span id="task-name" class="text-truncate" style="max-width:180px;">准备中...</span>
-                          <span id="task-percent">0%%</span>
+                          <span id="task-percent">0%</span>
                       </div>
                       <div class="progress" style="height:8px;">
                           <!-- 【检查】这里必须有 bg-success 或者 bg-primary，否则没颜色 -->
-                          <div id="task-bar" class="progress-bar progress-bar-striped progress-bar-animated bg-success" style="width: 0%%"></div>
+                          <div id="task-bar" class="progress-bar progress-bar-striped progress-bar-animated bg-success" style="width: 0%"></div>
                       </div>
                   </div>
               </div>
@@ -476,49 +699,46 @@ public class HtmlGenerator {
                 <div class="modal-footer p-2"><a id="dl-btn" class="btn btn-sm btn-primary px-3" download>下载原文件</a></div>
             </div></div></div>
             <script>
-                window.MAX_FILE_SIZE_MB = %d;
-                window.MAX_TEXT_LEN = %d;
+                window.MAX_FILE_SIZE_MB = {{raw:maxMb}};
+                window.MAX_TEXT_LEN = {{raw:maxLen}};
             </script>
             <footer class="text-center py-4 mt-5 text-secondary" style="font-size: 12px; opacity: 0.6;">
                 <hr class="border-secondary mb-3 opacity-25">
                 <div>Powered by <span class="text-light">Netty</span> & <span class="text-light">JavaFX</span></div>
                 <div class="mt-1">Designed for Local Network High-Speed Transfer</div>
             </footer>
-            <script src="/static/bootstrap.bundle.min.js"></script>
-            """ + CUSTOM_JS + "</body></html>", maxMb, maxLen);
-    }
-
-    // ================= 公开页面方法 =================
-
-    public static String generateFileList(File dir, String uri,String nickname) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(getHead(uri,nickname));
-        buf.append("<div class='path-bar'><i class='bi bi-folder2-open text-warning fs-5'></i><div class='path-text'>").append(uri).append("</div>");
-        if (AppConfig.getInstance().isAllowUpload()) {
-            buf.append("<button class='btn btn-sm btn-outline-secondary px-3 fw-bold me-2' onclick='showMkdir()'><i class='bi bi-folder-plus me-1'></i>新建</button>");
-            buf.append("<button class='btn btn-sm btn-primary px-3 fw-bold' onclick='document.getElementById(\"fi\").click()'><i class='bi bi-upload'></i>上传</button>");
-            buf.append("<input type='file' id='fi' onchange='doUpload(this.files)' hidden multiple>");
-        }
-        buf.append("<a href='javascript:navigate(location.pathname)' class='btn-action'><i class='bi bi-arrow-clockwise'></i></a></div>");
-        buf.append("<div class='list-group shadow-sm border border-secondary rounded overflow-hidden'>");
-        if (!"/".equals(uri) && !uri.isEmpty()) {
-            buf.append(String.format("<a href='javascript:void(0)' onclick='navigate(\"%s\")' class='list-group-item list-group-item-action py-3'><i class='bi bi-arrow-90deg-up me-3 text-warning'></i>.. 返回上一级</a>", resolveParent(uri)));
-        }
-        File[] files = dir.listFiles();
-        if (files != null) {
-            Arrays.sort(files, (f1, f2) -> f1.isDirectory() != f2.isDirectory() ? (f1.isDirectory() ? -1 : 1) : f1.getName().compareToIgnoreCase(f2.getName()));
-            for (File f : files) { if (f.isHidden() || !f.canRead()) continue; appendFileRow(buf, f, uri); }
-        }
-        buf.append("</div>").append(getFoot());
-        return buf.toString();
-    }
-
-    public static String generateQuickSharePage(File dir, String nickname) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(getHead("极速快传", nickname));
-
+            <script src="{{raw:bundle}}"></script>
+            """ + CUSTOM_JS + "</body></html>", "maxMb", "maxLen", "bundle");
+        static final String BUNDLE_URL = ASSETS.url("/static/bootstrap.bundle.min.js");
+
+        // --- 目录页 ---
+        static final HtmlTemplate PATH_BAR = HtmlTemplate.compile(
+                "<div class='path-bar'><i class='bi bi-folder2-open text-warning fs-5'></i><div class='path-text'>{{path}}</div>", "path");
+        static final HtmlTemplate UPLOAD_BUTTONS = HtmlTemplate.compile("""
+                <button class='btn btn-sm btn-outline-secondary px-3 fw-bold me-2' onclick='showMkdir()'><i class='bi bi-folder-plus me-1'></i>新建</button>\
+                <button class='btn btn-sm btn-primary px-3 fw-bold' onclick='document.getElementById("fi").click()'><i class='bi bi-upload'></i>上传</button>\
+                <input type='file' id='fi' onchange='doUpload(this.files)' hidden multiple>""");
+        // 筛选与排序交给 /api/list，行由脚本按需渲染 (大目录也只生成可见的几十行)
+        static final HtmlTemplate LIST_TOOLBAR = HtmlTemplate.compile("""
+            <a href='javascript:navigate(location.pathname)' class='btn-action'><i class='bi bi-arrow-clockwise'></i></a></div>
+            <div class='d-flex gap-2 mb-2'>
+                <input type='search' class='form-control form-control-sm bg-dark text-white border-secondary' placeholder='筛选当前目录...' oninput='onListFilter(this.value)'>
+                <select class='form-select form-select-sm bg-dark text-white border-secondary' style='width: auto;' onchange='onListSort(this.value)'>
+                    <option value='name'>名称</option><option value='mtime'>时间</option><option value='size'>大小</option>
+                </select>
+                <button class='btn btn-sm btn-outline-secondary' onclick='toggleListOrder(this)' title='升序 / 降序'><i class='bi bi-sort-down-alt'></i></button>
+            </div>
+            <div class='list-group shadow-sm border border-secondary rounded overflow-hidden'>
+            """);
+        static final HtmlTemplate PARENT_ROW = HtmlTemplate.compile(
+                "<a href='javascript:void(0)' onclick='navigate(\"{{raw:href}}\")' class='list-group-item list-group-item-action py-3'><i class='bi bi-arrow-90deg-up me-3 text-warning'></i>.. 返回上一级</a>",
+                "href");
+        static final HtmlTemplate LIST_CONTAINER = HtmlTemplate.compile(
+                "<div id='file-list' class='position-relative' data-path=\"{{path}}\" data-write='{{raw:write}}'></div></div>", "path", "write");
+
+        // --- 快传页 ---
         // 顶部输入框 (完全保留你的代码)
-        buf.append("""
+        static final HtmlTemplate QUICK_SHARE_TOP = HtmlTemplate.compile("""
             <div class="card p-3 mb-4 shadow-sm">
                 <form action="/api/text" method="post" class="input-group mb-3">
         
@@ -542,31 +762,55 @@ public class HtmlGenerator {
                 <h6 class="text-secondary m-0"><i class="bi bi-clock-history me-2"></i>传输时间轴</h6>
                 <button onclick="location.reload()" class="btn btn-sm btn-outline-secondary border-0"><i class="bi bi-arrow-clockwise fs-5"></i></button>
             </div>
+            <div id='feed-list' class='list-group list-group-flush border rounded border-secondary overflow-hidden shadow-sm'>
         """);
 
-        // 列表容器
-        buf.append("<div class='list-group list-group-flush border rounded border-secondary overflow-hidden shadow-sm'>");
-
-        File[] files = dir.listFiles();
-        if (files != null) {
-            Arrays.sort(files, (f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified()));
-            for (File f : files) {
-                appendFileRow(buf, f, "");
-            }
-        }
-        buf.append(getFoot());
-        return buf.toString();
-    }
-
-    public static String generateLoginPage(String error, String defaultNickname) {
-        StringBuilder buf = new StringBuilder();
-        // 这里假设 getHead 内部已经处理了 subtitle，我们传入 "安全验证"
-        buf.append(getHead("安全验证", null));
-
-        String alertHtml = (error != null) ?
-                String.format("<div class='alert alert-danger py-2 small mb-3'><i class='bi bi-exclamation-triangle-fill me-2'></i>%s</div>", error) : "";
+        // --- 文件行：行首 + 可选按钮 + 行尾 ---
+        static final HtmlTemplate DIR_ROW = HtmlTemplate.compile("""
+            <div class="list-group-item d-flex align-items-center py-2" data-name="{{name}}">
+                <i class="bi bi-folder-fill text-warning fs-4 me-3 flex-shrink-0"></i>
+                <div class="flex-grow-1" style="min-width: 0;">
+                    <a href='javascript:void(0)' onclick='navigate("{{raw:href}}")' class="file-name d-block text-truncate">{{name}}</a>
+                    <div class="file-meta text-truncate">{{raw:time}} &nbsp; </div>
+                </div>
+                <div class="ms-3 d-flex gap-2 flex-shrink-0">
+            """, "href", "name", "time");
+        static final HtmlTemplate FILE_ROW = HtmlTemplate.compile("""
+            <div class="list-group-item d-flex align-items-center py-2" data-name="{{name}}">
+                <i class="bi bi-file-earmark-text text-secondary fs-4 me-3 flex-shrink-0"></i>
+                <div class="flex-grow-1" style="min-width: 0;">
+                    <a href='javascript:void(0)' onclick="preview('{{raw:href}}', '{{raw:ext}}', '{{js:name}}','{{raw:size}}')" class="file-name d-block text-truncate">{{name}}</a>
+                    <div class="file-meta text-truncate">{{raw:time}} &nbsp; {{raw:sizeText}}</div>
+                </div>
+                <div class="ms-3 d-flex gap-2 flex-shrink-0">
+                    <a href='{{raw:href}}' download class='btn-action'><i class='bi bi-download'></i></a>
+            """, "href", "ext", "name", "size", "time", "sizeText");
+        static final HtmlTemplate MSG_ROW = HtmlTemplate.compile("""
+            <div class="list-group-item d-flex align-items-start py-3" data-name="{{name}}">
+                <i class="bi bi-chat-left-text-fill text-warning fs-4 me-3 flex-shrink-0"></i>
+                <div class="flex-grow-1 min-width-0" style="cursor:pointer" onclick="preview('{{raw:href}}', 'txt', '{{js:name}}','{{raw:size}}')">
+                    <div class='text-clamp'>{{preview}}</div>
+                    <div class="file-meta text-truncate">{{raw:time}} &nbsp; {{raw:length}} 字</div>
+                </div>
+                <div class="ms-3 d-flex gap-2 flex-shrink-0">
+                    <button onclick="copyMessage('{{raw:id}}')" class='btn-action border-0 bg-transparent'><i class='bi bi-clipboard'></i></button>
+                    <a href="javascript:void(0)" onclick="if(confirm('确定删除？')) navigate('{{raw:href}}?action=delete')" class="btn-action btn-del"><i class="bi bi-trash3"></i></a>
+            """, "href", "name", "size", "preview", "time", "length", "id");
+        static final HtmlTemplate DELETE_BUTTON = HtmlTemplate.compile("""
+                    <a href="javascript:void(0)" onclick="if(confirm('确定删除 {{js:name}} 吗？（该操作不可逆！）')) navigate('{{raw:href}}?action=delete')" class="btn-action btn-del"><i class="bi bi-trash3"></i></a>
+            """, "name", "href");
+        static final HtmlTemplate PIN_BUTTON = HtmlTemplate.compile("""
+                    <a href="javascript:void(0)" onclick="navigate('{{raw:href}}?action=expire&amp;hours={{raw:hours}}')" class="btn-action" title="{{title}}"><i class="bi bi-pin-angle{{raw:fill}}"></i></a>
+            """, "href", "hours", "title", "fill");
+        static final HtmlTemplate ROW_END = HtmlTemplate.compile("""
+                </div>
+            </div>
+            """);
 
-        buf.append(String.format("""
+        // --- 登录页与盘符列表 ---
+        static final HtmlTemplate LOGIN_ALERT = HtmlTemplate.compile(
+                "<div class='alert alert-danger py-2 small mb-3'><i class='bi bi-exclamation-triangle-fill me-2'></i>{{error}}</div>", "error");
+        static final HtmlTemplate LOGIN_TOP = HtmlTemplate.compile("""
             <div class="d-flex justify-content-center align-items-center" style="min-height: 70vh;">
                 <div class="card p-4 shadow-lg" style="width: 360px; border-radius: 12px; border-top: 4px solid var(--accent);">
                     <div class="text-center mb-4">
@@ -575,8 +819,9 @@ public class HtmlGenerator {
                         <p class="text-secondary small">请验证身份以继续访问</p>
                     </div>
                     
-                    %s <!-- 错误提示区 -->
-                    
+                    <!-- 错误提示区 -->
+        """);
+        static final HtmlTemplate LOGIN_FORM = HtmlTemplate.compile("""
                     <form method="post" action="/login">
                         <!-- 1. 用户/设备昵称 (先表明身份) -->
                         <div class="mb-3 text-start">
@@ -586,7 +831,7 @@ public class HtmlGenerator {
                                     <i class="bi bi-person-badge"></i>
                                 </span>
                                 <input type="text" name="nickname" class="form-control bg-dark text-white border-secondary" 
-                                       value="%s" placeholder="给自己起个外号吧" autocomplete="off">
+                                       value="{{nickname}}" placeholder="给自己起个外号吧" autocomplete="off">
                             </div>
                         </div>
                         
@@ -618,112 +863,113 @@ public class HtmlGenerator {
                     </div>
                 </div>
             </div>
-        """, alertHtml, defaultNickname));
-
-        buf.append(getFoot());
-        return buf.toString();
-    }
-
-    public static String generateDriveList(String nickname) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(getHead("我的电脑",nickname));
-        buf.append("<div class='list-group shadow-sm border border-secondary rounded'>");
-        for (File r : File.listRoots()) {
-            String href = "/" + r.getPath().replace("\\", "/");
-            buf.append(String.format("""
-                <a href="javascript:void(0)" onclick='navigate(\"%s\")' class="list-group-item list-group-item-action d-flex align-items-center py-3">
+        """, "nickname");
+        static final HtmlTemplate DRIVE_ROW = HtmlTemplate.compile("""
+                <a href="javascript:void(0)" onclick='navigate("{{raw:href}}")' class="list-group-item list-group-item-action d-flex align-items-center py-3">
                     <i class="bi bi-pc-display me-3 text-info fs-4"></i>
-                    <div class="flex-grow-1"><div class="fw-bold text-white">%s</div><small class="text-muted">%s 可用</small></div>
+                    <div class="flex-grow-1"><div class="fw-bold text-white">{{name}}</div><small class="text-muted">{{raw:free}} 可用</small></div>
                     <i class="bi bi-chevron-right text-muted"></i>
                 </a>
-            """, href, r.getPath(), formatSize(r.getFreeSpace())));
-        }
-        buf.append("</div>").append(getFoot());
-        return buf.toString();
+            """, "href", "name", "free");
     }
 
-    // --- 工具类方法 ---
-
-    private static void appendFileRow(StringBuilder buf, File f, String baseUri) {
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd  HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final Set<String> IMAGE_EXTS = Set.of("jpg", "png", "gif", "jpeg", "webp");
+    private static final Set<String> TEXT_EXTS = Set.of("txt", "log", "java", "py", "htm", "html", "css", "js", "json",
+            "xml", "yaml", "yml", "md", "c", "cpp", "properties", "sh", "h", "");
 
-        String name = f.getName();
-        String rawHref = (baseUri.endsWith("/") ? baseUri : baseUri + "/") + name;
-        if (!rawHref.startsWith("/")) rawHref = "/" + rawHref;
-        String href = encodeUrl(rawHref);
-        String safeName = StringEscapeUtils.escapeHtml4(StringEscapeUtils.escapeEcmaScript(name));
-        String time = new SimpleDateFormat("yyyy-MM-dd  HH:mm:ss").format(new Date(f.lastModified()));
-
-        if (name.endsWith(".lanmsg")) {
-            // --- 文本模式 ---
-            String fullText = "";
-            try { fullText = Files.readString(f.toPath()); } catch(Exception ignored){}
-
-            String displayText = fullText.trim();
-            if (displayText.length() > 200) displayText = displayText.substring(0, 200) + "...";
-            String[] lines = displayText.split("\n");
-            if (lines.length > 5) displayText = String.join("\n", Arrays.copyOf(lines, 5)) + "...";
-
-            String safeFullText = StringEscapeUtils.escapeHtml4(StringEscapeUtils.escapeEcmaScript(fullText));
-            String safeDisplay = StringEscapeUtils.escapeHtml4(displayText);
+    private static void writeHead(HtmlStream out, String subtitle, String nickname) {
+        String badgeText = (nickname != null && !nickname.isEmpty()) ? nickname : subtitle;
+        String appTitle = AppConfig.getInstance().getdeviceName(); // 获取动态设备名
+        Templates.HEAD.render(out, appTitle, badgeText, Templates.ICON_URL, Templates.CSS_URL, Templates.ICONS_URL);
+    }
 
-            String icon = "bi-chat-left-text-fill text-warning";
-            String contentHtml = String.format("<div class='text-clamp'>%s</div>", safeDisplay);
+    private static void writeFoot(HtmlStream out) {
+        AppConfig config = AppConfig.getInstance();
+        Templates.FOOT.render(out, config.getMaxFileSizeMb(), config.getMaxTextLength(), Templates.BUNDLE_URL);
+    }
 
-            String length = String.valueOf(fullText.length());
-            String metaHtml = String.format("<div class=\"file-meta text-truncate\">%s &nbsp; %s 字</div>",time,length);
+    // ================= 公开页面方法 =================
 
-            String mainAction = String.format("onclick=\"preview('%s', 'txt', '%s','%d')\"", href, safeName,f.length());
+    public static void generateFileList(HtmlStream out, String uri, String nickname) {
+        boolean writable = AppConfig.getInstance().isAllowUpload();
+        writeHead(out, uri, nickname);
+        Templates.PATH_BAR.render(out, uri);
+        if (writable) Templates.UPLOAD_BUTTONS.render(out);
+        Templates.LIST_TOOLBAR.render(out);
+        if (!"/".equals(uri) && !uri.isEmpty()) {
+            Templates.PARENT_ROW.render(out, resolveParent(uri));
+        }
+        Templates.LIST_CONTAINER.render(out, uri, writable ? 1 : 0);
+        writeFoot(out);
+    }
 
-            // 渲染行
-            buf.append(String.format("""
-                        <div class="list-group-item d-flex align-items-start py-3">
-                            <i class="bi %s fs-4 me-3 flex-shrink-0"></i>
-                            <div class="flex-grow-1 min-width-0" style="cursor:pointer" %s>
-                                %s
-                                %s
-                            </div>
-                            <div class="ms-3 d-flex gap-2 flex-shrink-0">
-                                <button onclick="copy('%s')" class='btn-action border-0 bg-transparent'><i class='bi bi-clipboard'></i></button>
-                                <a href="javascript:void(0)" onclick="if(confirm('确定删除？')) navigate('%s?action=delete')" class="btn-action btn-del"><i class="bi bi-trash3"></i></a>
-                            </div>
-                        </div>
-                    """, icon, mainAction, contentHtml, metaHtml, safeFullText, href));
-            }
-        else {
-            String safeNameHTML = StringEscapeUtils.escapeHtml4(name);
-            String ext = getExt(name);
+    public static void generateQuickSharePage(HtmlStream out, String nickname) {
+        writeHead(out, "极速快传", nickname);
+        Templates.QUICK_SHARE_TOP.render(out);
+        for (QuickShareIndex.Item f : QuickShareIndex.getInstance().items()) {
+            writeFileRow(out, f);
+        }
+        writeFoot(out);
+    }
 
-            String icon = f.isDirectory() ? "bi-folder-fill text-warning" : "bi-file-earmark-text text-secondary";
+    /**
+     * 时间轴中的单行 (推送新增后页面按需获取)
+     */
+    public static void generateFeedItem(HtmlStream out, File file) {
+        writeFileRow(out, QuickShareIndex.getInstance().get(file));
+    }
 
-            String size = f.isDirectory() ? "" : formatSize(f.length());
+    public static void generateLoginPage(HtmlStream out, String error, String defaultNickname) {
+        // 这里假设 getHead 内部已经处理了 subtitle，我们传入 "安全验证"
+        writeHead(out, "安全验证", null);
+        Templates.LOGIN_TOP.render(out);
+        if (error != null) Templates.LOGIN_ALERT.render(out, error);
+        Templates.LOGIN_FORM.render(out, defaultNickname == null ? "" : defaultNickname);
+        writeFoot(out);
+    }
 
-            String action = f.isDirectory() ?
-                    String.format("href='javascript:void(0)' onclick='navigate(\"%s\")'", href) :
-                    String.format("href='javascript:void(0)' onclick=\"preview('%s', '%s', '%s','%d')\"", href, ext, safeName,f.length());
+    public static void generateDriveList(HtmlStream out, String nickname) {
+        writeHead(out, "我的电脑", nickname);
+        out.append("<div class='list-group shadow-sm border border-secondary rounded'>");
+        for (File r : File.listRoots()) {
+            String href = "/" + r.getPath().replace("\\", "/");
+            Templates.DRIVE_ROW.render(out, href, r.getPath(), formatSize(r.getFreeSpace()));
+        }
+        out.append("</div>");
+        writeFoot(out);
+    }
 
-            String downloadBtn = f.isDirectory() ? "" : "<a href='"+href+"' download class='btn-action'><i class='bi bi-download'></i></a>";
+    // --- 工具类方法 ---
 
-            String delBtn = AppConfig.getInstance().isAllowUpload() ?
-                    String.format("<a href=\"javascript:void(0)\" onclick=\"if(confirm('确定删除 %s 吗？（该操作不可逆！）')) navigate('%s?action=delete')\" class=\"btn-action btn-del\"><i class=\"bi bi-trash3\"></i></a>",
-                            safeName, href) : "";
+    // 快传时间轴中的一行 (条目位于快传根目录)
+    private static void writeFileRow(HtmlStream out, QuickShareIndex.Item f) {
 
+        String name = f.name();
+        String href = encodeUrl("/" + name);
+        String time = TIME_FORMAT.format(Instant.ofEpochMilli(f.lastModified()));
 
-            buf.append(String.format("""
-            <div class="list-group-item d-flex align-items-center py-2">
-                <i class="bi %s fs-4 me-3 flex-shrink-0"></i>
-        
-                <div class="flex-grow-1" style="min-width: 0;">
-                    <a %s class="file-name d-block text-truncate">%s</a>
-                    <div class="file-meta text-truncate">%s &nbsp; %s</div>
-                </div>
-                <div class="ms-3 d-flex gap-2 flex-shrink-0">
-                    %s
-                    %s
-                </div>
-            </div>
-        """, icon, action, safeNameHTML, time, size, downloadBtn ,delBtn));
+        if (name.endsWith(".lanmsg")) {
+            // --- 文本模式：只带摘要，全文在复制时从 /api/text/{id} 获取 ---
+            MessagePreviewCache.Preview preview = MessagePreviewCache.getInstance().get(f.file(), f.lastModified(), f.length());
+            String id = encodeUrl(name.substring(0, name.length() - ".lanmsg".length()));
+            Templates.MSG_ROW.render(out, href, name, f.length(), preview.snippet(), time, preview.length(), id);
+        } else if (f.directory()) {
+            Templates.DIR_ROW.render(out, href, name, time);
+        } else {
+            Templates.FILE_ROW.render(out, href, getExt(name), name, f.length(), time, formatSize(f.length()));
         }
 
+        if (!name.endsWith(".lanmsg") && AppConfig.getInstance().isAllowUpload()) {
+            Templates.DELETE_BUTTON.render(out, name, href);
+        }
+        if (AppConfig.getInstance().isAllowUpload()) {
+            // 固定的条目不参与自动清理
+            boolean pinned = f.expireHours() == 0;
+            Templates.PIN_BUTTON.render(out, href, pinned ? -1 : 0, pinned ? "取消固定" : "固定 (不自动清理)", pinned ? "-fill" : "");
+        }
+        Templates.ROW_END.render(out);
     }
 
     private static String resolveParent(String uri) {
@@ -738,18 +984,21 @@ public class HtmlGenerator {
     private static String formatSize(long l) {
         if (l < 1024) return l + " B";
         int e = (int) (Math.log(l) / Math.log(1024));
-        return String.format("%.1f %sB", l / Math.pow(1024, e), "KMGTPE".charAt(e - 1) + "");
+        long tenths = Math.round(l * 10 / Math.pow(1024, e)); // 保留一位小数
+        return tenths / 10 + "." + tenths % 10 + " " + "KMGTPE".charAt(e - 1) + "B";
     }
 
     private static String getExt(String n) {
-        n = n.toLowerCase();
-        if (n.matches(".*\\.(jpg|png|gif|jpeg|webp)$")) return "img";
-        if (n.matches(".*\\.(txt|log|java|py|htm|html|css|js|json|xml|yaml|yml|md|c|cpp|properties|sh|h|)$")) return "txt";
+        int dot = n.lastIndexOf('.');
+        if (dot < 0) return "bin";
+        String ext = n.substring(dot + 1).toLowerCase();
+        if (IMAGE_EXTS.contains(ext)) return "img";
+        if (TEXT_EXTS.contains(ext)) return "txt";
         // pdf 不再单独识别，直接走默认的 "bin" 逻辑触发“不支持预览”提示
         return "bin";
 
     }
-    private static String encodeUrl(String path) {
+    static String encodeUrl(String path) {
         try {
             return java.net.URLEncoder.encode(path, StandardCharsets.UTF_8)
                     .replace("+","%20")
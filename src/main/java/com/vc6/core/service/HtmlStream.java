@@ -0,0 +1,190 @@
+package com.vc6.core.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+
+/**
+ * 页面流式输出
+ * 文本直接编码进池化 ByteBuf，较大的固定片段 (页头、页脚、脚本) 以预编码的常驻缓冲区拼接，不做拷贝；
+ * 小片段直接拷进当前缓冲区，避免组件过多导致 CompositeByteBuf 合并。
+ * 小页面攒齐后带 Content-Length 一次发出；超过阈值时改为 chunked，边生成边发送。
+ */
+public final class HtmlStream {
+
+    // 攒够这么多字节就发出一个分块
+    private static final int FLUSH_BYTES = 16 * 1024;
+    private static final int MAX_COMPONENTS = 64;
+    // 小于该长度的固定片段拷贝比新增组件更划算
+    private static final int COPY_BELOW = 1024;
+
+    private final ChannelHandlerContext ctx;
+    private final HttpResponse head;
+    private CompositeByteBuf pending;
+    private ByteBuf current; // 正在写入文本的池化缓冲区
+    private boolean started; // 响应头是否已发出 (已进入 chunked 模式)
+
+    HtmlStream(ChannelHandlerContext ctx, HttpResponse head) {
+        this.ctx = ctx;
+        this.head = head;
+        this.pending = ctx.alloc().compositeBuffer(MAX_COMPONENTS);
+    }
+
+    /**
+     * 预编码的常驻片段 (引用计数永不归零，可被任意多个响应共享)
+     */
+    public static ByteBuf fragment(String html) {
+        byte[] bytes = html.getBytes(CharsetUtil.UTF_8);
+        ByteBuf buf = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        return Unpooled.unreleasableBuffer(buf.asReadOnly());
+    }
+
+    public HtmlStream append(ByteBuf fragment) {
+        if (!fragment.isReadable()) return this;
+        if (fragment.readableBytes() < COPY_BELOW) {
+            buffer().writeBytes(fragment, fragment.readerIndex(), fragment.readableBytes());
+        } else {
+            seal();
+            pending.addComponent(true, fragment.retainedDuplicate());
+        }
+        flushIfFull();
+        return this;
+    }
+
+    public HtmlStream append(CharSequence text) {
+        if (text == null || text.isEmpty()) return this;
+        ByteBufUtil.writeUtf8(buffer(), text);
+        flushIfFull();
+        return this;
+    }
+
+    public HtmlStream append(long number) {
+        ByteBufUtil.writeAscii(buffer(), Long.toString(number));
+        flushIfFull();
+        return this;
+    }
+
+    /**
+     * 按 HTML 转义写入 (文本节点与双引号属性值均可用)，不产生中间字符串
+     */
+    public HtmlStream appendEscaped(CharSequence text) {
+        if (text == null) return this;
+        ByteBuf buf = buffer();
+        int runStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (entity == null) continue;
+            if (i > runStart) ByteBufUtil.writeUtf8(buf, text, runStart, i);
+            ByteBufUtil.writeAscii(buf, entity);
+            runStart = i + 1;
+        }
+        if (runStart < text.length()) ByteBufUtil.writeUtf8(buf, text, runStart, text.length());
+        flushIfFull();
+        return this;
+    }
+
+    /**
+     * 作为单引号 JS 字符串的内容写进 HTML 属性：一次遍历同时完成 JS 与 HTML 两层转义
+     * (等价于 escapeHtml4(escapeEcmaScript(s))，但非 ASCII 字符原样保留)
+     */
+    public HtmlStream appendJsInAttribute(CharSequence text) {
+        if (text == null) return this;
+        ByteBuf buf = buffer();
+        int runStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String escaped = switch (c) {
+                case '\\' -> "\\\\";
+                case '\'' -> "\\&#39;";
+                case '"' -> "\\&quot;";
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\u2028', '\u2029' -> c == '\u2028' ? "\\u2028" : "\\u2029";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (escaped == null) continue;
+            if (i > runStart) ByteBufUtil.writeUtf8(buf, text, runStart, i);
+            ByteBufUtil.writeAscii(buf, escaped);
+            runStart = i + 1;
+        }
+        if (runStart < text.length()) ByteBufUtil.writeUtf8(buf, text, runStart, text.length());
+        flushIfFull();
+        return this;
+    }
+
+    /**
+     * 页面生成完毕：一次都没发出过则作为完整响应发送，否则发送最后一个分块
+     */
+    void finish() {
+        seal();
+        ChannelFutureListener closeOnFailure = f -> {
+            if (!f.isSuccess()) f.channel().close();
+        };
+        if (!started) {
+            FullHttpResponse response = new DefaultFullHttpResponse(head.protocolVersion(), head.status(), pending,
+                    head.headers(), EmptyHttpHeaders.INSTANCE);
+            HttpUtil.setContentLength(response, pending.readableBytes());
+            ctx.writeAndFlush(response).addListener(closeOnFailure);
+        } else {
+            ctx.writeAndFlush(new DefaultLastHttpContent(pending)).addListener(closeOnFailure);
+        }
+        pending = null;
+    }
+
+    /**
+     * 生成过程中出错时调用
+     * @return 响应头是否已经发出 (已发出则只能断开连接，无法再改成错误页)
+     */
+    boolean abort() {
+        if (current != null) current.release();
+        current = null;
+        if (pending != null) pending.release();
+        pending = null;
+        return started;
+    }
+
+    private ByteBuf buffer() {
+        if (current == null) current = ctx.alloc().buffer(FLUSH_BYTES);
+        return current;
+    }
+
+    // 把正在写的缓冲区并入待发送队列
+    private void seal() {
+        if (current == null) return;
+        if (current.isReadable()) {
+            pending.addComponent(true, current);
+        } else {
+            current.release();
+        }
+        current = null;
+    }
+
+    private void flushIfFull() {
+        int size = pending.readableBytes() + (current == null ? 0 : current.readableBytes());
+        if (size < FLUSH_BYTES) return;
+        seal();
+        if (!started) {
+            HttpUtil.setTransferEncodingChunked(head, true);
+            ctx.write(head);
+            started = true;
+        }
+        ctx.writeAndFlush(new DefaultHttpContent(pending));
+        pending = ctx.alloc().compositeBuffer(MAX_COMPONENTS);
+    }
+}
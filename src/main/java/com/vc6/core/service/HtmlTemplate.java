@@ -0,0 +1,90 @@
+package com.vc6.core.service;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 预编译页面模板
+ * 模板文本只在编译时解析一次：固定文本预编码为常驻 ByteBuf，占位符变成带类型的槽位，
+ * 渲染时按槽位依次写入参数，热路径上没有格式串或正则解析。
+ * <p>
+ * 占位符写法：
+ * {{name}}     HTML 转义后输出 (文本节点、双引号属性)
+ * {{js:name}}  作为单引号 JS 字符串内容写进 HTML 属性 (如 onclick="f('{{js:name}}')")
+ * {{raw:name}} 原样输出 (已编码的 URL、数字、可信片段)
+ */
+public final class HtmlTemplate {
+
+    private enum Kind { HTML, JS, RAW }
+
+    // fragments[i] 之后是第 i 个槽位，最后一段固定文本后没有槽位
+    private final ByteBuf[] fragments;
+    private final Kind[] kinds;
+    private final int[] argIndex;
+
+    private HtmlTemplate(ByteBuf[] fragments, Kind[] kinds, int[] argIndex) {
+        this.fragments = fragments;
+        this.kinds = kinds;
+        this.argIndex = argIndex;
+    }
+
+    /**
+     * @param slotNames render 参数的顺序；同一个名字可以在模板中出现多次
+     */
+    public static HtmlTemplate compile(String source, String... slotNames) {
+        List<String> names = Arrays.asList(slotNames);
+        List<ByteBuf> fragments = new ArrayList<>();
+        List<Kind> kinds = new ArrayList<>();
+        List<Integer> argIndex = new ArrayList<>();
+
+        int pos = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) break;
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) throw new IllegalArgumentException("Unclosed placeholder at " + open);
+
+            String slot = source.substring(open + 2, close).trim();
+            Kind kind = Kind.HTML;
+            if (slot.startsWith("js:")) {
+                kind = Kind.JS;
+                slot = slot.substring(3);
+            } else if (slot.startsWith("raw:")) {
+                kind = Kind.RAW;
+                slot = slot.substring(4);
+            }
+            int index = names.indexOf(slot);
+            if (index < 0) throw new IllegalArgumentException("Undeclared slot: " + slot);
+
+            fragments.add(HtmlStream.fragment(source.substring(pos, open)));
+            kinds.add(kind);
+            argIndex.add(index);
+            pos = close + 2;
+        }
+        fragments.add(HtmlStream.fragment(source.substring(pos)));
+
+        return new HtmlTemplate(fragments.toArray(new ByteBuf[0]), kinds.toArray(new Kind[0]),
+                argIndex.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    public void render(HtmlStream out, Object... args) {
+        for (int i = 0; i < kinds.length; i++) {
+            out.append(fragments[i]);
+            Object value = args[argIndex[i]];
+            if (value instanceof Long || value instanceof Integer) {
+                out.append(((Number) value).longValue()); // 数字不需要转义
+                continue;
+            }
+            String text = String.valueOf(value);
+            switch (kinds[i]) {
+                case HTML -> out.appendEscaped(text);
+                case JS -> out.appendJsInAttribute(text);
+                case RAW -> out.append(text);
+            }
+        }
+        out.append(fragments[kinds.length]);
+    }
+}
@@ -0,0 +1,90 @@
+package com.vc6.core.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文本消息 (.lanmsg) 摘要缓存
+ * 时间轴只显示前几行和字数：每条消息只在首次展示或内容变化时读一次文件，
+ * 之后直接用缓存的摘要；全文通过 /api/text/{id} 按需获取。
+ */
+public class MessagePreviewCache {
+
+    private static final int MAX_ENTRIES = 4096;
+    private static final int SNIPPET_CHARS = 200;
+    private static final int SNIPPET_LINES = 5;
+
+    /**
+     * @param length 全文字数
+     */
+    public record Preview(String snippet, int length) {
+    }
+
+    // 以修改时间和大小判断缓存是否仍对应当前文件内容
+    private record Cached(long lastModified, long size, Preview preview) {
+    }
+
+    private static final MessagePreviewCache INSTANCE = new MessagePreviewCache();
+
+    private final Map<String, Cached> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public static MessagePreviewCache getInstance() {
+        return INSTANCE;
+    }
+
+    private MessagePreviewCache() {
+    }
+
+    public Preview get(File file) {
+        return get(file, file.lastModified(), file.length());
+    }
+
+    /**
+     * 调用方已知文件的修改时间和大小 (如来自 QuickShareIndex) 时使用，命中缓存不再访问磁盘
+     */
+    public Preview get(File file, long lastModified, long size) {
+        String key = file.getAbsolutePath();
+        synchronized (cache) {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.lastModified == lastModified && cached.size == size) return cached.preview;
+        }
+
+        String text;
+        try {
+            text = Files.readString(file.toPath());
+        } catch (IOException e) {
+            return new Preview("", 0);
+        }
+        Preview preview = new Preview(snippet(text), text.length());
+        synchronized (cache) {
+            cache.put(key, new Cached(lastModified, size, preview));
+        }
+        return preview;
+    }
+
+    /**
+     * 刚写入的消息直接放入缓存，时间轴刷新时不必再读回来
+     */
+    public void remember(File file, String text) {
+        synchronized (cache) {
+            cache.put(file.getAbsolutePath(), new Cached(file.lastModified(), file.length(), new Preview(snippet(text), text.length())));
+        }
+    }
+
+    private static String snippet(String text) {
+        String display = text.trim();
+        if (display.length() > SNIPPET_CHARS) display = display.substring(0, SNIPPET_CHARS) + "...";
+        String[] lines = display.split("\n");
+        if (lines.length > SNIPPET_LINES) display = String.join("\n", Arrays.copyOf(lines, SNIPPET_LINES)) + "...";
+        return display;
+    }
+}
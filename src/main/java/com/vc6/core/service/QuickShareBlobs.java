@@ -0,0 +1,274 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 快传文件的内容寻址存储
+ * 文件内容按 SHA-256 存放在快传目录下的 .blobs/ab/abcd... 中，快传目录里的文件名只是指向它的硬链接：
+ * 同一内容无论分享多少次、用什么名字都只占一份磁盘。名称到内容的对应关系记在 QuickShareIndex (随日志持久化)，
+ * 最后一个引用某内容的条目被删除或过期时，其内容文件一并删除。
+ * 同名但内容不同的上传不再覆盖，而是另起 "名称 (1).ext"。
+ */
+public class QuickShareBlobs {
+
+    public static final String BLOB_DIR = ".blobs";
+    private static final int HASH_MEMO_SIZE = 1024;
+    private static final long STALE_TEMP_MS = 24 * 3600_000L;
+
+    private static final QuickShareBlobs INSTANCE = new QuickShareBlobs();
+
+    // 本机文件 (路径 + 大小 + 修改时间) 到摘要的缓存，同一文件再次分享时不必重新读一遍
+    private final Map<String, String> hashMemo = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > HASH_MEMO_SIZE;
+        }
+    };
+    // 快传目录所在文件系统是否支持硬链接 (每个目录首次使用时探测)
+    private volatile Path probedDir;
+    private volatile boolean hardLinks;
+
+    public static QuickShareBlobs getInstance() {
+        return INSTANCE;
+    }
+
+    private QuickShareBlobs() {
+    }
+
+    /**
+     * 分享本机已有的文件 (拖拽、粘贴)，原文件保持不动
+     * @return 快传目录中对应的文件
+     */
+    public File share(File source) throws IOException {
+        return store(source.toPath(), source.getName(), false);
+    }
+
+    /**
+     * 收下一个已写入临时文件的上传，临时文件会被移走或删除
+     * @param temp 须位于 tempDir() 中
+     */
+    public File accept(Path temp, String fileName) throws IOException {
+        return store(temp, fileName, true);
+    }
+
+    /**
+     * 上传落盘用的临时目录 (与内容文件同一文件系统，收下时只需改名)
+     */
+    public Path tempDir() throws IOException {
+        return Files.createDirectories(blobRoot(shareDir()));
+    }
+
+    /**
+     * 不再被任何条目引用的内容文件
+     */
+    synchronized void release(Path shareDir, String hash) {
+        try {
+            Files.deleteIfExists(blobPath(shareDir, hash));
+        } catch (IOException e) {
+            LogPanel.log("[Error] 快传内容清理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除没有条目引用的内容文件 (索引由目录扫描重建、丢失了对应关系之后)
+     * 名称本身是硬链接，删除内容文件不影响已有条目，只是它们不再参与去重
+     */
+    void collect(Path shareDir, Set<String> referenced) {
+        Path root = blobRoot(shareDir);
+        if (!Files.isDirectory(root)) return;
+        int removed = 0;
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(root)) {
+            for (Path prefix : prefixes) {
+                if (!Files.isDirectory(prefix)) {
+                    // 中断的上传留下的临时文件；分块上传的部分文件可能仍在续传，只清理放置已久的
+                    if (isStale(prefix)) Files.deleteIfExists(prefix);
+                    continue;
+                }
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(prefix)) {
+                    for (Path blob : blobs) {
+                        if (!referenced.contains(blob.getFileName().toString())) {
+                            Files.deleteIfExists(blob);
+                            removed++;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LogPanel.log("[Error] 快传内容清理失败: " + e.getMessage());
+        }
+        if (removed > 0) LogPanel.log("[System] 已清理 " + removed + " 个无引用的快传内容文件");
+    }
+
+    /**
+     * 快传目录中的文件是否仍是该内容文件的硬链接
+     */
+    boolean isLinked(Path shareDir, File file, String hash) {
+        try {
+            return Files.isSameFile(file.toPath(), blobPath(shareDir, hash));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private File store(Path content, String fileName, boolean move) throws IOException {
+        Path dir = shareDir();
+        Files.createDirectories(dir);
+        if (!supportsHardLinks(dir)) return storePlain(content, dir, fileName, move);
+
+        String hash = move ? digest(content) : memoizedDigest(content);
+        Path blob = blobPath(dir, hash);
+        long size = Files.size(content);
+        // 大小不符说明有人直接改了某个链接 (改动会作用到内容文件上)，按新内容重建
+        Path staged = isIntact(blob, size) ? null : stage(content, blob, move);
+
+        File dest;
+        synchronized (this) {
+            if (!isIntact(blob, size)) {
+                if (staged == null) staged = stage(content, blob, move); // 检查之后恰好被清理了
+                Files.move(staged, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else if (staged != null) {
+                Files.delete(staged); // 其它上传已经存入了同样的内容
+            }
+            if (move) Files.deleteIfExists(content);
+
+            dest = new File(dir.toFile(), fileName);
+            if (!dest.exists() || !Files.isSameFile(dest.toPath(), blob)) {
+                dest = uniqueName(dir.toFile(), fileName);
+                Files.createLink(dest.toPath(), blob);
+            }
+            // 同名同内容时重新分享只需刷新索引中的分享时间；硬链接共用 inode，不能改文件的修改时间
+        }
+        QuickShareIndex.getInstance().add(dest, hash);
+        return dest;
+    }
+
+    private static boolean isStale(Path temp) throws IOException {
+        return System.currentTimeMillis() - Files.getLastModifiedTime(temp).toMillis() > STALE_TEMP_MS;
+    }
+
+    private static boolean isIntact(Path blob, long size) throws IOException {
+        try {
+            return Files.size(blob) == size;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    // 先把内容放到内容文件旁的临时文件中，再原子改名为内容文件
+    private static Path stage(Path content, Path blob, boolean move) throws IOException {
+        Files.createDirectories(blob.getParent());
+        Path tmp = blob.resolveSibling(blob.getFileName() + ".tmp" + Thread.currentThread().threadId());
+        if (move) {
+            Files.move(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.copy(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return tmp;
+    }
+
+    // 文件系统不支持硬链接 (如 FAT32 U 盘) 时按普通文件保存，仍然避免同名覆盖
+    private File storePlain(Path content, Path dir, String fileName, boolean move) throws IOException {
+        File dest;
+        synchronized (this) {
+            dest = uniqueName(dir.toFile(), fileName);
+            if (move) {
+                Files.move(content, dest.toPath());
+            } else {
+                Files.copy(content, dest.toPath());
+            }
+            dest.setLastModified(System.currentTimeMillis());
+        }
+        QuickShareIndex.getInstance().add(dest);
+        return dest;
+    }
+
+    private static File uniqueName(File dir, String fileName) {
+        File dest = new File(dir, fileName);
+        if (!dest.exists()) return dest;
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String ext = dot > 0 ? fileName.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            dest = new File(dir, base + " (" + i + ")" + ext);
+            if (!dest.exists()) return dest;
+        }
+    }
+
+    private synchronized boolean supportsHardLinks(Path dir) {
+        if (dir.equals(probedDir)) return hardLinks;
+        boolean supported;
+        Path probe = dir.resolve(BLOB_DIR).resolve(".probe");
+        Path link = dir.resolve(BLOB_DIR).resolve(".probe-link");
+        try {
+            Files.createDirectories(probe.getParent());
+            Files.deleteIfExists(link);
+            Files.write(probe, new byte[0]);
+            Files.createLink(link, probe);
+            supported = true;
+        } catch (IOException | UnsupportedOperationException e) {
+            supported = false;
+            LogPanel.log("[System] 快传目录不支持硬链接，文件将按普通方式保存 (不去重)");
+        } finally {
+            try {
+                Files.deleteIfExists(link);
+                Files.deleteIfExists(probe);
+            } catch (IOException ignored) {
+            }
+        }
+        hardLinks = supported;
+        probedDir = dir;
+        return supported;
+    }
+
+    private String memoizedDigest(Path file) throws IOException {
+        String key = file.toAbsolutePath() + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+        synchronized (hashMemo) {
+            String hash = hashMemo.get(key);
+            if (hash != null) return hash;
+        }
+        String hash = digest(file);
+        synchronized (hashMemo) {
+            hashMemo.put(key, hash);
+        }
+        return hash;
+    }
+
+    private static String digest(Path file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static Path blobRoot(Path shareDir) {
+        return shareDir.resolve(BLOB_DIR);
+    }
+
+    private static Path blobPath(Path shareDir, String hash) {
+        return blobRoot(shareDir).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Path shareDir() {
+        return Path.of(AppConfig.getInstance().getQuickSharePath()).toAbsolutePath().normalize();
+    }
+}
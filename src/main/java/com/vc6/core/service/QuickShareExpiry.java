@@ -0,0 +1,102 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 快传过期清理调度
+ * 始终只挂一个定时任务，定在 QuickShareIndex 中最近一个条目的到期时刻；到点删除后再按下一个到期时间重新挂上。
+ * 新增条目、单独设置保留时长、修改全局保留时长时重新计算。不再依赖有人打开列表才顺带清理。
+ */
+public class QuickShareExpiry {
+
+    // 删除失败 (文件被占用等) 时隔这么久再试，避免到期时间停在过去导致反复空转
+    private static final long RETRY_MS = 60_000;
+
+    private static final QuickShareExpiry INSTANCE = new QuickShareExpiry();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "quick-share-expiry");
+        t.setDaemon(true);
+        return t;
+    });
+    // 以下两项只在调度线程中访问
+    private ScheduledFuture<?> pending;
+    private long pendingDeadline = Long.MAX_VALUE;
+
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    public static QuickShareExpiry getInstance() {
+        return INSTANCE;
+    }
+
+    private QuickShareExpiry() {
+        AppConfig.getInstance().quickShareExpireHoursProperty().addListener(o -> reschedule());
+    }
+
+    /**
+     * 到期时间可能已变化，重新计算下一次清理时刻 (异步，可在任意线程调用)
+     */
+    public void reschedule() {
+        scheduler.execute(() -> plan(0));
+    }
+
+    /**
+     * 累计自动清理的条目数
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * 累计自动清理释放的字节数
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    private void plan(long minDelay) {
+        long deadline = QuickShareIndex.getInstance().nextDeadline();
+        if (pending != null && deadline == pendingDeadline && minDelay == 0) return;
+        if (pending != null) pending.cancel(false);
+        pending = null;
+        pendingDeadline = deadline;
+        if (deadline == Long.MAX_VALUE) return;
+        // 判定条件是到期时间早于当前时间，所以晚 1 毫秒触发
+        long delay = Math.max(deadline + 1 - System.currentTimeMillis(), minDelay);
+        pending = scheduler.schedule(this::sweep, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep() {
+        pending = null;
+        long now = System.currentTimeMillis();
+        List<QuickShareIndex.Item> expired = QuickShareIndex.getInstance().expire(now);
+        if (!expired.isEmpty()) {
+            long bytes = 0;
+            for (QuickShareIndex.Item item : expired) {
+                // 内容仍被其它条目引用 (去重后的硬链接) 时并没有释放空间
+                if (!item.directory() && !QuickShareIndex.getInstance().isStored(item.hash())) bytes += item.length();
+            }
+            expiredCount.addAndGet(expired.size());
+            reclaimedBytes.addAndGet(bytes);
+            LogPanel.log("[System] 快传自动清理 " + expired.size() + " 项，释放 " + formatSize(bytes)
+                    + " (累计 " + expiredCount.get() + " 项 / " + formatSize(reclaimedBytes.get()) + ")");
+        }
+        // 仍有已到期的条目说明删除失败，稍后重试
+        plan(QuickShareIndex.getInstance().nextDeadline() < now ? RETRY_MS : 0);
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), "KMGTPE".charAt(exp - 1));
+    }
+}
@@ -0,0 +1,141 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 快传时间轴的变化推送
+ * QuickShareIndex 中条目的增删 (含本服务写入、过期清理及目录监听到的外部变化) 逐条推送给
+ * 网页 (Server-Sent Events，GET /api/feed/events) 和桌面端 QuickShareView，取代整页刷新与轮询。
+ */
+public class QuickShareFeed {
+
+    public enum Type { ADDED, DELETED, EXPIRED }
+
+    public record Event(Type type, String name) {
+    }
+
+    // 新增事件等文件静止这么久再发出 (创建、写入、改时间通常连着来几次)
+    private static final long SETTLE_MS = 300;
+    private static final long HEARTBEAT_SECONDS = 30;
+
+    private static final QuickShareFeed INSTANCE = new QuickShareFeed();
+
+    private final List<Consumer<Event>> listeners = new CopyOnWriteArrayList<>();
+    private final ChannelGroup subscribers = new DefaultChannelGroup("quick-share-feed", GlobalEventExecutor.INSTANCE);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "quick-share-feed");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, ScheduledFuture<?>> pendingAdds = new HashMap<>();
+
+    public static QuickShareFeed getInstance() {
+        return INSTANCE;
+    }
+
+    private QuickShareFeed() {
+        scheduler.scheduleAtFixedRate(() -> broadcast(": ping\n\n"), HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 桌面端等进程内监听者 (在推送线程回调)
+     */
+    public void addListener(Consumer<Event> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 把一条已发出响应头的连接加入推送名单，连接关闭时自动移除
+     */
+    public void subscribe(Channel channel, HttpResponse head) {
+        channel.write(head);
+        // 断线后浏览器 3 秒重连
+        channel.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("retry: 3000\n\n", CharsetUtil.UTF_8)));
+        subscribers.add(channel);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 由 QuickShareIndex 在条目新增或内容变化时调用
+     */
+    public synchronized void added(String name) {
+        ScheduledFuture<?> previous = pendingAdds.get(name);
+        if (previous != null) previous.cancel(false);
+        ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+        // 任务执行前要先拿到本对象的锁，那时 self[0] 一定已赋值
+        self[0] = scheduler.schedule(() -> {
+            synchronized (this) {
+                if (pendingAdds.get(name) != self[0]) return; // 已被更新的事件取代
+                pendingAdds.remove(name);
+            }
+            dispatch(new Event(Type.ADDED, name));
+        }, SETTLE_MS, TimeUnit.MILLISECONDS);
+        pendingAdds.put(name, self[0]);
+    }
+
+    /**
+     * 由 QuickShareIndex 在条目移除时调用 (每次移除只会调用一次)
+     */
+    public void removed(String name, boolean expired) {
+        Type type = expired ? Type.EXPIRED : Type.DELETED;
+        synchronized (this) {
+            ScheduledFuture<?> pending = pendingAdds.remove(name);
+            if (pending != null) pending.cancel(false);
+        }
+        scheduler.execute(() -> dispatch(new Event(type, name)));
+    }
+
+    private void dispatch(Event event) {
+        for (Consumer<Event> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                LogPanel.log("[Error] 快传推送回调失败: " + e.getMessage());
+            }
+        }
+        broadcast("event: " + event.type().name().toLowerCase()
+                + "\ndata: {\"name\":\"" + StringEscapeUtils.escapeJson(event.name()) + "\"}\n\n");
+    }
+
+    private void broadcast(String message) {
+        if (subscribers.isEmpty()) return;
+        ByteBuf buf = Unpooled.copiedBuffer(message, CharsetUtil.UTF_8);
+        try {
+            for (Channel ch : subscribers) {
+                // 读不过来的客户端直接断开，由浏览器重连后整页重新同步，避免消息在服务端堆积
+                if (!ch.isWritable()) {
+                    ch.close();
+                    continue;
+                }
+                ch.writeAndFlush(new DefaultHttpContent(buf.retainedDuplicate()))
+                        .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            }
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.vc6.core.service;
+
+import com.vc6.core.persistence.QuickShareJournal;
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.*;
+
+/**
+ * 快传内容索引
+ * 内存中按时间倒序维护快传目录的全部条目 (哈希表 + 双向链表)：新条目插入表头、按名称删除都是 O(1)，
+ * 表尾即最旧条目，过期清理从表尾依次弹出。变化追加写入 QuickShareJournal，启动时回放日志，
+ * 目录自上次记录后未变化则不再扫描磁盘。网页与桌面端都从这里读取，不再每次列目录。
+ * 单独设置了保留时长的条目另按到期时间排序，供 QuickShareExpiry 按最近的到期时间定时清理。
+ * 同时记录每个条目对应的内容文件 (QuickShareBlobs) 及其引用数，最后一个引用消失时删除内容文件。
+ * 内容存储中的条目共用内容文件的修改时间，其分享时间只记在索引 (日志) 里。
+ * 以 "." 开头的名称 (如内容存储目录 .blobs) 不属于快传条目。
+ */
+public class QuickShareIndex {
+
+    /**
+     * @param lastModified 修改时间；在内容存储中的条目为分享时间
+     * @param expireHours 单独设置的保留时长 (小时)，0 为永不清理，-1 为跟随全局设置
+     * @param hash        对应内容文件的 SHA-256，不在内容存储中时为 null
+     */
+    public record Item(File file, String name, boolean directory, long length, long lastModified, int expireHours, String hash) {
+        public static Item of(File f) {
+            return new Item(f, f.getName(), f.isDirectory(), f.length(), f.lastModified(), -1, null);
+        }
+
+        Item withFile(File f) {
+            return new Item(f, name, directory, length, lastModified, expireHours, hash);
+        }
+
+        Item withExpireHours(int hours) {
+            return new Item(file, name, directory, length, lastModified, hours, hash);
+        }
+
+        /**
+         * @return 到期时间，永不清理时为 Long.MAX_VALUE
+         */
+        public long deadline(int globalHours) {
+            int hours = expireHours >= 0 ? expireHours : globalHours;
+            return hours > 0 && lastModified > 0 ? lastModified + hours * HOUR_MS : Long.MAX_VALUE;
+        }
+    }
+
+    private static final class Node {
+        final Item item;
+        Node newer, older;
+
+        Node(Item item) { this.item = item; }
+    }
+
+    // 日志记录数超过存活条目的这么多倍时重写压缩
+    private static final int COMPACT_FACTOR = 2;
+    private static final int COMPACT_MIN_RECORDS = 1000;
+    private static final long HOUR_MS = 60L * 60L * 1000L;
+
+    private static final QuickShareIndex INSTANCE = new QuickShareIndex();
+
+    private final QuickShareJournal journal = new QuickShareJournal();
+    private final Map<String, Node> byName = new HashMap<>();
+    private Node newest, oldest;
+    // 单独设置了保留小时数 (> 0) 的条目，按到期时间排序；其余条目的到期顺序即链表顺序
+    private final TreeSet<Item> timed = new TreeSet<>(
+            Comparator.comparingLong((Item i) -> i.deadline(0)).thenComparing(Item::name));
+    // 内容摘要 -> 引用它的条目数
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private volatile Path dir; // 当前索引对应的快传目录
+    private int journalRecords;
+    // 读取用的不可变快照，变化后置空，下次读取时重建
+    private volatile List<Item> snapshot;
+
+    public static QuickShareIndex getInstance() {
+        return INSTANCE;
+    }
+
+    private QuickShareIndex() {
+        DirectoryCache.getInstance().addChangeListener(this::onDirectoryChange);
+    }
+
+    /**
+     * 加载 (或在快传目录变更后重建) 索引
+     */
+    public synchronized void load() {
+        ensureDir();
+    }
+
+    /**
+     * 按时间倒序的全部条目
+     */
+    public List<Item> items() {
+        List<Item> s = snapshot;
+        if (s != null && dir != null && dir.equals(configuredDir())) return s;
+        synchronized (this) {
+            ensureDir();
+            if (snapshot == null) {
+                List<Item> list = new ArrayList<>(byName.size());
+                for (Node n = newest; n != null; n = n.older) list.add(n.item);
+                snapshot = Collections.unmodifiableList(list);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 索引中的条目，不在索引中时按文件当前状态构造
+     */
+    public Item get(File file) {
+        synchronized (this) {
+            ensureDir();
+            Node node = inDir(file) ? byName.get(file.getName()) : null;
+            if (node != null) return node.item;
+        }
+        return Item.of(file);
+    }
+
+    /**
+     * 本服务写入或覆盖了快传目录中的文件
+     */
+    public void add(File file) {
+        add(file, null);
+    }
+
+    /**
+     * @param hash 文件是 QuickShareBlobs 中内容的硬链接时为其摘要
+     */
+    public void add(File file, String hash) {
+        synchronized (this) {
+            ensureDir();
+            if (!inDir(file) || isHidden(file.getName())) return;
+            Item item = Item.of(file);
+            long time = hash != null ? System.currentTimeMillis() : item.lastModified();
+            if (!upsert(new Item(item.file(), item.name(), item.directory(), item.length(), time, -1, hash))) return;
+        }
+        QuickShareFeed.getInstance().added(file.getName());
+        QuickShareExpiry.getInstance().reschedule();
+    }
+
+    /**
+     * 单独设置某一条目的保留时长
+     * @param hours 0 为永不清理，-1 为恢复跟随全局设置
+     * @return 条目不存在时返回 false
+     */
+    public boolean setExpireHours(File file, int hours) {
+        synchronized (this) {
+            ensureDir();
+            Node node = inDir(file) ? byName.get(file.getName()) : null;
+            if (node == null) return false;
+            if (node.item.expireHours() == hours) return true;
+            Item item = node.item.withExpireHours(Math.max(hours, -1));
+            unlink(node);
+            link(item);
+            journal(item, false);
+        }
+        QuickShareExpiry.getInstance().reschedule();
+        return true;
+    }
+
+    /**
+     * 最近一个条目的到期时间，没有会过期的条目时为 Long.MAX_VALUE
+     */
+    public synchronized long nextDeadline() {
+        ensureDir();
+        int globalHours = AppConfig.getInstance().getQuickShareExpireHours();
+        long next = Long.MAX_VALUE;
+        if (globalHours > 0) {
+            // 跟随全局设置的条目按修改时间到期，从最旧一端找第一个即可
+            for (Node n = oldest; n != null; n = n.newer) {
+                if (n.item.expireHours() < 0 && n.item.lastModified() > 0) {
+                    next = n.item.deadline(globalHours);
+                    break;
+                }
+            }
+        }
+        if (!timed.isEmpty()) next = Math.min(next, timed.first().deadline(globalHours));
+        return next;
+    }
+
+    /**
+     * 本服务删除了快传目录中的文件
+     */
+    public void remove(File file, boolean expired) {
+        synchronized (this) {
+            ensureDir();
+            if (!inDir(file) || !delete(file.getName())) return;
+        }
+        QuickShareFeed.getInstance().removed(file.getName(), expired);
+    }
+
+    /**
+     * 删除到期时间早于 now 的条目 (只从两条有序队列的头部检查，不遍历整个索引)
+     * @return 已删除的条目
+     */
+    public List<Item> expire(long now) {
+        int globalHours = AppConfig.getInstance().getQuickShareExpireHours();
+        List<Item> expired = new ArrayList<>();
+        synchronized (this) {
+            ensureDir();
+            List<Item> due = new ArrayList<>();
+            if (globalHours > 0) {
+                long cutoff = now - globalHours * HOUR_MS;
+                for (Node n = oldest; n != null && n.item.lastModified() < cutoff; n = n.newer) {
+                    // lastModified 为 0 表示读不到时间，不能据此判定过期
+                    if (n.item.expireHours() < 0 && n.item.lastModified() > 0) due.add(n.item);
+                }
+            }
+            for (Item item : timed) {
+                if (item.deadline(globalHours) >= now) break;
+                due.add(item);
+            }
+            for (Item item : due) {
+                if (item.file().delete()) {
+                    delete(item.name());
+                    expired.add(item);
+                }
+            }
+        }
+        for (Item item : expired) {
+            QuickShareFeed.getInstance().removed(item.name(), true);
+        }
+        if (!expired.isEmpty()) DirectoryCache.getInstance().invalidate(expired.getFirst().file().getParentFile());
+        return expired;
+    }
+
+    // 外部程序对快传目录的改动 (也会收到本服务自身写入的回声，upsert 对未变化的条目不做任何事)
+    private void onDirectoryChange(Path changedDir, String name, WatchEvent.Kind<?> kind) {
+        boolean changed;
+        boolean removed = kind == StandardWatchEventKinds.ENTRY_DELETE;
+        synchronized (this) {
+            if (dir == null || !dir.equals(changedDir) || (name != null && isHidden(name))) return;
+            if (name == null) { // 事件溢出，按当前索引重新扫描整个目录
+                rebuild(dir, false);
+                return;
+            }
+            File file = dir.resolve(name).toFile();
+            if (removed || !file.exists()) {
+                removed = true;
+                changed = delete(name);
+            } else {
+                changed = upsert(Item.of(file));
+            }
+        }
+        if (!changed) return;
+        if (removed) {
+            QuickShareFeed.getInstance().removed(name, false);
+        } else {
+            QuickShareFeed.getInstance().added(name);
+            QuickShareExpiry.getInstance().reschedule();
+        }
+    }
+
+    // ---------- 以下方法调用方需持有锁 ----------
+
+    private void ensureDir() {
+        Path configured = configuredDir();
+        if (!configured.equals(dir)) rebuild(configured, true);
+    }
+
+    /**
+     * @param trustJournal 目录修改时间与日志记录一致时直接使用日志内容；
+     *                     为 false 时 (监听事件溢出) 以当前索引为准重新扫描
+     */
+    private void rebuild(Path newDir, boolean trustJournal) {
+        // 扫描只能得到文件本身的信息，保留时长、内容摘要与分享时间要从日志或当前索引中按名称找回
+        Map<String, Item> known = new HashMap<>();
+        if (!trustJournal && newDir.equals(dir)) {
+            for (Node n = newest; n != null; n = n.older) known.put(n.item.name(), n.item);
+        }
+        dir = newDir;
+        byName.clear();
+        timed.clear();
+        blobRefs.clear();
+        newest = oldest = null;
+        snapshot = null;
+
+        File dirFile = newDir.toFile();
+        if (!dirFile.exists()) dirFile.mkdirs(); // 先建好目录才能注册监听
+        DirectoryCache.getInstance().watch(dirFile);
+        QuickShareJournal.Snapshot saved = trustJournal ? journal.load(newDir.toString()) : null;
+        List<Item> items = new ArrayList<>();
+        boolean fromJournal = saved != null && saved.dirModified() == dirFile.lastModified();
+        if (fromJournal) {
+            for (QuickShareJournal.Entry e : saved.entries().values()) items.add(toItem(dirFile, e));
+            journalRecords = saved.records();
+        } else {
+            // 日志不可信 (如程序关闭期间有人往目录里放了文件) 时仍以它作为已知状态
+            if (saved != null) {
+                for (QuickShareJournal.Entry e : saved.entries().values()) known.put(e.name(), toItem(dirFile, e));
+            }
+            File[] files = dirFile.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    if (!isHidden(f.getName())) items.add(merge(Item.of(f), known.get(f.getName())));
+                }
+            }
+            journalRecords = Integer.MAX_VALUE; // 强制重写日志
+        }
+
+        items.sort(Comparator.comparingLong(Item::lastModified));
+        for (Item item : items) linkAsNewest(item);
+        maybeCompact();
+        // 扫描重建时无法确认全部对应关系，不回收内容文件，以免删掉仍在用的内容
+        if (fromJournal) QuickShareBlobs.getInstance().collect(newDir, blobRefs.keySet());
+        QuickShareExpiry.getInstance().reschedule();
+        LogPanel.log("[System] 快传索引已加载: " + byName.size() + " 项" + (fromJournal ? " (日志)" : " (扫描)"));
+    }
+
+    // 扫描到的条目沿用同名旧记录的保留设置；文件未变 (大小、时间一致，或仍是同一内容文件的链接) 时还沿用摘要与分享时间
+    private Item merge(Item scanned, Item known) {
+        if (known == null || known.directory() != scanned.directory()) return scanned;
+        if (known.hash() != null && known.length() == scanned.length()
+                && (known.lastModified() == scanned.lastModified() || QuickShareBlobs.getInstance().isLinked(dir, scanned.file(), known.hash()))) {
+            return known.withFile(scanned.file());
+        }
+        return scanned.withExpireHours(known.expireHours());
+    }
+
+    /**
+     * @return 索引是否发生变化
+     */
+    private boolean upsert(Item item) {
+        Node existing = byName.get(item.name());
+        if (existing != null) {
+            Item old = existing.item;
+            boolean sameFile = old.lastModified() == item.lastModified() && old.length() == item.length() && old.directory() == item.directory();
+            // 目录监听的回声不带摘要，文件未变时不能把已记录的摘要冲掉；
+            // 内容存储中的条目记的是分享时间，与文件时间不同，只按大小判断
+            boolean echo = item.hash() == null && old.hash() != null && old.length() == item.length() && !item.directory();
+            if (echo || sameFile && (item.hash() == null || item.hash().equals(old.hash()))) {
+                return false;
+            }
+            unlink(existing);
+            item = item.withExpireHours(old.expireHours()); // 覆盖上传保留原来的保留设置
+        }
+        link(item);
+        journal(item, false);
+        if (existing != null) releaseIfUnused(existing.item.hash());
+        return true;
+    }
+
+    private boolean delete(String name) {
+        Node node = byName.get(name);
+        if (node == null) return false;
+        unlink(node);
+        journal(node.item, true);
+        releaseIfUnused(node.item.hash());
+        return true;
+    }
+
+    // 新条目几乎总是最新的，直接挂到表头；时间更早的 (如带原始时间的拷贝) 才向后查找位置
+    private void link(Item item) {
+        Node node = new Node(item);
+        Node after = newest;
+        while (after != null && after.item.lastModified() > item.lastModified()) after = after.older;
+        if (after == newest) {
+            node.older = newest;
+            if (newest != null) newest.newer = node;
+            newest = node;
+            if (oldest == null) oldest = node;
+        } else if (after == null) {
+            node.newer = oldest;
+            oldest.older = node;
+            oldest = node;
+        } else {
+            node.newer = after.newer;
+            node.older = after;
+            after.newer.older = node;
+            after.newer = node;
+        }
+        byName.put(item.name(), node);
+        if (item.expireHours() > 0) timed.add(item);
+        if (item.hash() != null) blobRefs.merge(item.hash(), 1, Integer::sum);
+        snapshot = null;
+    }
+
+    private void linkAsNewest(Item item) {
+        Node node = new Node(item);
+        node.older = newest;
+        if (newest != null) newest.newer = node;
+        newest = node;
+        if (oldest == null) oldest = node;
+        byName.put(item.name(), node);
+        if (item.expireHours() > 0) timed.add(item);
+        if (item.hash() != null) blobRefs.merge(item.hash(), 1, Integer::sum);
+    }
+
+    private void unlink(Node node) {
+        if (node.newer != null) node.newer.older = node.older;
+        else newest = node.older;
+        if (node.older != null) node.older.newer = node.newer;
+        else oldest = node.newer;
+        byName.remove(node.item.name());
+        timed.remove(node.item);
+        if (node.item.hash() != null) blobRefs.computeIfPresent(node.item.hash(), (h, n) -> n > 1 ? n - 1 : null);
+        snapshot = null;
+    }
+
+    private void journal(Item item, boolean deleted) {
+        long dirModified = dir.toFile().lastModified();
+        try {
+            if (deleted) {
+                journal.appendDelete(dirModified, item.name());
+            } else {
+                journal.appendAdd(dirModified, toEntry(item));
+            }
+            journalRecords++;
+        } catch (IOException e) {
+            LogPanel.log("[Error] 快传索引日志写入失败: " + e.getMessage());
+        }
+        maybeCompact();
+    }
+
+    private void maybeCompact() {
+        if (journalRecords <= Math.max(COMPACT_MIN_RECORDS, byName.size() * COMPACT_FACTOR)) return;
+        List<QuickShareJournal.Entry> entries = new ArrayList<>(byName.size());
+        for (Node n = oldest; n != null; n = n.newer) entries.add(toEntry(n.item));
+        try {
+            journal.rewrite(dir.toString(), dir.toFile().lastModified(), entries);
+            journalRecords = entries.size();
+        } catch (IOException e) {
+            LogPanel.log("[Error] 快传索引日志压缩失败: " + e.getMessage());
+        }
+    }
+
+    private void releaseIfUnused(String hash) {
+        if (hash != null && !blobRefs.containsKey(hash)) QuickShareBlobs.getInstance().release(dir, hash);
+    }
+
+    /**
+     * 内容文件是否仍被某个条目引用
+     */
+    public synchronized boolean isStored(String hash) {
+        return hash != null && blobRefs.containsKey(hash);
+    }
+
+    private static Item toItem(File dirFile, QuickShareJournal.Entry e) {
+        return new Item(new File(dirFile, e.name()), e.name(), e.directory(), e.length(), e.lastModified(), e.expireHours(), e.hash());
+    }
+
+    private static QuickShareJournal.Entry toEntry(Item i) {
+        return new QuickShareJournal.Entry(i.name(), i.lastModified(), i.length(), i.directory(), i.expireHours(), i.hash());
+    }
+
+    private static boolean isHidden(String name) {
+        return name.startsWith(".");
+    }
+
+    private boolean inDir(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        return parent != null && parent.toPath().normalize().equals(dir);
+    }
+
+    private static Path configuredDir() {
+        return Path.of(AppConfig.getInstance().getQuickSharePath()).toAbsolutePath().normalize();
+    }
+}
@@ -6,8 +6,6 @@ import com.vc6.utils.MessageUtils;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
 import java.util.List;
 import javafx.embed.swing.SwingFXUtils;
 import javax.imageio.ImageIO;
@@ -34,7 +32,11 @@ public class QuickShareService {
             File dir = new File(AppConfig.getInstance().getQuickSharePath());
             if (!dir.exists()) dir.mkdirs();
             String filename = "clip_" + System.currentTimeMillis() + ".lanmsg";
-            Files.writeString(new File(dir, filename).toPath(), cleanText);
+            File dest = new File(dir, filename);
+            Files.writeString(dest.toPath(), cleanText);
+            DirectoryCache.getInstance().invalidate(dir);
+            MessagePreviewCache.getInstance().remember(dest, cleanText);
+            QuickShareIndex.getInstance().add(dest);
             MessageUtils.showToast("已上传文本");
         } catch (IOException e) {
             e.printStackTrace();
@@ -56,14 +58,14 @@ public class QuickShareService {
                         continue;
                     }
                     valid_cnt++;
-                    File dest = new File(AppConfig.getInstance().getQuickSharePath(), f.getName());
-                    Files.copy(f.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    dest.setLastModified(System.currentTimeMillis());
+                    // 按内容去重保存，已分享过的文件只需建一个硬链接
+                    QuickShareBlobs.getInstance().share(f);
                 }
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+        DirectoryCache.getInstance().invalidate(new File(AppConfig.getInstance().getQuickSharePath()));
         MessageUtils.showToast("已上传 %d 个文件".formatted(valid_cnt));
     }
 
@@ -84,6 +86,8 @@ public class QuickShareService {
 
             // 修正时间戳，确保排在最前
             dest.setLastModified(System.currentTimeMillis());
+            DirectoryCache.getInstance().invalidate(dir);
+            QuickShareIndex.getInstance().add(dest);
             MessageUtils.showToast("已上传图片");
 
         } catch (IOException e) {
@@ -92,49 +96,27 @@ public class QuickShareService {
     }
 
 
-    public void cleanExpiredFiles() {
-        int expireHours = AppConfig.getInstance().getQuickShareExpireHours();
-        if (expireHours <= 0) return; // 如果设为 0 (永不)，则直接跳过
-
-        long expireMs = expireHours * 60L * 60L * 1000L;
-        long now = System.currentTimeMillis();
-
-        File dir = new File(AppConfig.getInstance().getQuickSharePath());
-        File[] files = dir.listFiles();
-
-        if (files != null) {
-            for (File f : files) {
-                long lastMod = f.lastModified();
-                // 核心判定：必须 lastMod > 0 且 超过有效期
-                if (lastMod > 0 && (now - lastMod > expireMs)) {
-                    if (f.delete()) {
-                        System.out.println("自动清理过期文件: " + f.getName());
-                    }
-                }
-            }
-        }
-    }
     /**
-     * 获取文件列表 (已排序)
+     * 获取时间轴条目 (按时间倒序，直接取自内存索引；过期清理由 QuickShareExpiry 定时执行)
      */
-    public List<File> getFeedList() {
-
-        cleanExpiredFiles();
-        File dir = new File(AppConfig.getInstance().getQuickSharePath());
-        if (!dir.exists()) return List.of();
-
-        File[] files = dir.listFiles();
-        if (files == null) return List.of();
+    public List<QuickShareIndex.Item> getFeedList() {
+        return QuickShareIndex.getInstance().items();
+    }
 
-        // 按时间倒序
-        Arrays.sort(files, (f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified()));
-        return Arrays.asList(files);
+    /**
+     * 设置条目是否永久保留 (不参与自动清理)
+     */
+    public void setPinned(File file, boolean pinned) {
+        QuickShareIndex.getInstance().setExpireHours(file, pinned ? 0 : -1);
     }
 
     /**
      * 删除文件
      */
     public void deleteFile(File file) {
-        if (file != null) file.delete();
+        if (file != null && file.delete()) {
+            DirectoryCache.getInstance().invalidate(file.getParentFile());
+            QuickShareIndex.getInstance().remove(file, false);
+        }
     }
 }
\ No newline at end of file
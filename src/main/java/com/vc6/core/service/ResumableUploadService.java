@@ -0,0 +1,293 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+import com.vc6.model.ServerMode;
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可续传的分块上传 (tus 风格)
+ * 先登记一次上传 (目标目录、文件名、总长度)，服务端建好同样大小的部分文件；之后客户端按偏移量分块写入，
+ * 块可以并行、乱序、重复到达，服务端记录已收到的区间。网络中断后查询已收到的区间，只补传缺的部分。
+ * 全部收齐后部分文件改名为正式文件 (快传模式下交给 QuickShareBlobs 去重收下)。
+ */
+public class ResumableUploadService {
+
+    // 长时间没有动静的上传视为放弃，删除部分文件
+    private static final long IDLE_EXPIRE_MS = TimeUnit.HOURS.toMillis(24);
+    // 已完成的上传保留一会，客户端没收到最后一块的响应时还能查到结果
+    private static final long DONE_KEEP_MS = TimeUnit.HOURS.toMillis(1);
+    // 未完成上传的数量上限：按用户计，另有总数兜底；已完成的不计入
+    private static final int MAX_ACTIVE_PER_OWNER = 64;
+    private static final int MAX_ACTIVE = 1024;
+    private static final int MAX_DONE = 1024;
+
+    private static final ResumableUploadService INSTANCE = new ResumableUploadService();
+
+    // 未完成的上传
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    // 已完成的上传，只为响应丢失后的查询而保留，数量有限，最旧的先丢弃
+    private final Map<String, Upload> done = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Upload> eldest) {
+            return size() > MAX_DONE;
+        }
+    });
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "resumable-upload-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static ResumableUploadService getInstance() {
+        return INSTANCE;
+    }
+
+    private ResumableUploadService() {
+        sweeper.scheduleWithFixedDelay(this::sweep, 10, 10, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 一次上传的状态；区间表与完成标记由对象锁保护，写入文件本身不加锁 (按位置写，互不干扰)
+     */
+    public static final class Upload {
+        private final String id;
+        private final String owner;
+        private final File targetDir;
+        private final String fileName;
+        private final long length;
+        private final Path partFile;
+        private final FileChannel channel;
+        // 已收到的区间 start -> end (不含)，相邻或重叠的区间合并存放
+        private final TreeMap<Long, Long> received = new TreeMap<>();
+        private boolean complete;
+        private volatile long lastActive = System.currentTimeMillis();
+
+        private Upload(String id, String owner, File targetDir, String fileName, long length, Path partFile) throws IOException {
+            this.id = id;
+            this.owner = owner;
+            this.targetDir = targetDir;
+            this.fileName = fileName;
+            this.length = length;
+            this.partFile = partFile;
+            this.channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        public String getId() { return id; }
+        public String getOwner() { return owner; }
+        public String getFileName() { return fileName; }
+        public long getLength() { return length; }
+
+        /**
+         * 从头开始连续收到的字节数
+         */
+        public synchronized long getOffset() {
+            if (complete) return length;
+            Map.Entry<Long, Long> first = received.firstEntry();
+            return first != null && first.getKey() == 0 ? first.getValue() : 0;
+        }
+
+        public synchronized boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * 已收到的区间，形如 "0-1048576,2097152-3145728" (end 不含)
+         */
+        public synchronized String getRanges() {
+            if (complete) return "0-" + length;
+            StringBuilder sb = new StringBuilder();
+            received.forEach((s, e) -> {
+                if (!sb.isEmpty()) sb.append(',');
+                sb.append(s).append('-').append(e);
+            });
+            return sb.toString();
+        }
+
+        // 返回 true 表示这一段恰好补齐了整个文件 (只会有一个调用者拿到 true)
+        private synchronized boolean markReceived(long start, long end) {
+            lastActive = System.currentTimeMillis();
+            if (complete || end <= start) return false;
+            Map.Entry<Long, Long> before = received.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = received.ceilingEntry(start)) != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                received.remove(next.getKey());
+            }
+            received.put(start, end);
+            if (start == 0 && end >= length) {
+                complete = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 登记一次新的上传
+     * @param owner 发起者的用户 ID，之后的写入只接受同一用户
+     * @throws IllegalStateException 该用户 (或全部用户) 未完成的上传过多
+     */
+    public Upload create(String owner, File targetDir, String fileName, long length) throws IOException {
+        if (!hasRoom(owner)) sweep();
+        if (!hasRoom(owner)) throw new IllegalStateException("Too many pending uploads");
+
+        String id = newId();
+        Path part = isQuickShare()
+                ? QuickShareBlobs.getInstance().tempDir().resolve("upload-" + id + ".part")
+                : targetDir.toPath().resolve("." + id + ".part");
+        Upload upload = new Upload(id, owner, targetDir, fileName, length, part);
+        hide(part);
+        uploads.put(id, upload);
+        if (length == 0) {
+            synchronized (upload) {
+                upload.complete = true;
+            }
+            finish(upload);
+        }
+        return upload;
+    }
+
+    public Upload get(String id) {
+        Upload upload = uploads.get(id);
+        if (upload == null) upload = done.get(id);
+        if (upload != null) upload.lastActive = System.currentTimeMillis();
+        return upload;
+    }
+
+    /**
+     * 把一段数据写到部分文件的指定位置，可在多个线程中对同一上传并发调用
+     */
+    public void write(Upload upload, long position, ByteBuf buf) throws IOException {
+        int index = buf.readerIndex();
+        int remaining = buf.readableBytes();
+        while (remaining > 0) {
+            int n = buf.getBytes(index, upload.channel, position, remaining);
+            index += n;
+            position += n;
+            remaining -= n;
+        }
+    }
+
+    /**
+     * 登记 [start, end) 已写入；若由此收齐则转为正式文件
+     * @return 收齐并完成时返回最终文件，否则 null
+     */
+    public File received(Upload upload, long start, long end) throws IOException {
+        if (!upload.markReceived(start, end)) return null;
+        return finish(upload);
+    }
+
+    /**
+     * 客户端放弃上传
+     */
+    public void abort(Upload upload) {
+        uploads.remove(upload.id);
+        done.remove(upload.id);
+        discard(upload);
+    }
+
+    /**
+     * 服务停止时清理所有未完成的部分文件
+     */
+    public void abortAll() {
+        uploads.values().forEach(this::discard);
+        uploads.clear();
+        done.clear();
+    }
+
+    private File finish(Upload upload) throws IOException {
+        upload.channel.close();
+        File dest;
+        try {
+            if (isQuickShare()) {
+                dest = QuickShareBlobs.getInstance().accept(upload.partFile, upload.fileName);
+            } else {
+                dest = new File(upload.targetDir, upload.fileName);
+                Files.move(upload.partFile, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            uploads.remove(upload.id);
+            Files.deleteIfExists(upload.partFile);
+            throw e;
+        }
+        uploads.remove(upload.id);
+        done.put(upload.id, upload);
+        DirectoryCache.getInstance().invalidate(upload.targetDir);
+        LogPanel.log("[Service] " + upload.owner + ": 文件上传成功: " + dest.getName() + " (分块续传)");
+        return dest;
+    }
+
+    private void discard(Upload upload) {
+        if (upload.isComplete()) return;
+        try {
+            upload.channel.close();
+            Files.deleteIfExists(upload.partFile);
+        } catch (IOException e) {
+            LogPanel.log("[Error] 清理未完成的上传失败: " + e.getMessage());
+        }
+    }
+
+    private boolean hasRoom(String owner) {
+        if (uploads.size() >= MAX_ACTIVE) return false;
+        int mine = 0;
+        for (Upload u : uploads.values()) {
+            if (u.owner.equals(owner) && ++mine >= MAX_ACTIVE_PER_OWNER) return false;
+        }
+        return true;
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        uploads.values().removeIf(u -> {
+            if (u.isComplete() || now - u.lastActive < IDLE_EXPIRE_MS) return false;
+            discard(u);
+            LogPanel.log("[System] 上传长时间未继续，已放弃: " + u.fileName);
+            return true;
+        });
+        synchronized (done) {
+            done.values().removeIf(u -> now - u.lastActive >= DONE_KEEP_MS);
+        }
+    }
+
+    // 非快传模式下部分文件放在目标目录里；点开头在 Windows 上不算隐藏，补上隐藏属性，列表中不显示
+    private static void hide(Path part) {
+        try {
+            Files.setAttribute(part, "dos:hidden", true);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException ignored) {
+        }
+    }
+
+    private String newId() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static boolean isQuickShare() {
+        return AppConfig.getInstance().getServerMode() == ServerMode.QUICK_SHARE;
+    }
+}
@@ -1,23 +1,42 @@
 package com.vc6.core.service;
 
+import com.vc6.core.persistence.SessionLog;
+import com.vc6.core.persistence.UserStore;
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
 import com.vc6.model.UserSession;
-import javafx.application.Platform;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import com.vc6.model.UserTraffic;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.Properties;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class SessionManager {
 
+    /**
+     * 会话变化的通知，在产生变化的线程 (通常是 Netty 线程) 上回调，实现应只做登记、尽快返回
+     */
+    public interface SessionListener {
+        /** 新会话出现或会话字段有变化 */
+        void sessionChanged(UserSession s);
+
+        /** 会话被移出内存 */
+        void sessionRemoved(UserSession s);
+    }
+
+    // 未登录的访客闲置这么久后从内存中移除 (再来时按 Cookie 重新建立)；已登录用户一直保留
+    private static final long GUEST_IDLE_MS = TimeUnit.MINUTES.toMillis(30);
+
     private final ConcurrentHashMap<String, UserSession> sessions = new ConcurrentHashMap<>();
-    private final ObservableList<UserSession> sessionList = FXCollections.observableArrayList(
-            user -> new javafx.beans.Observable[]{ user.valuableProperty() }
-    );
-    private final Properties userStore = new Properties();
-    private final File userFile = new File("users.properties");
+    // IP -> 该 IP 上的会话 (NAT 后可能不止一个)，随 sessions 与会话 IP 变化同步维护
+    private final ConcurrentHashMap<String, Set<UserSession>> sessionsByIp = new ConcurrentHashMap<>();
+    private final List<SessionListener> listeners = new CopyOnWriteArrayList<>();
+    private final UserStore userStore = UserStore.getInstance();
 
 
     private static final SessionManager INSTANCE = new SessionManager();
@@ -25,87 +44,68 @@ public class SessionManager {
 
     private SessionManager() {
         loadUsers();
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::evictIdleGuests, 1, 1, TimeUnit.MINUTES);
     }
 
     public static SessionManager getInstance() { return INSTANCE; }
 
     private void loadUsers() {
-        if (!userFile.exists()) return;
-        try (Reader reader = new InputStreamReader(new FileInputStream(userFile), StandardCharsets.UTF_8)) {
-            userStore.load(reader);
-            for (String key : userStore.stringPropertyNames()) {
-                if (key.contains(".")) {
-                    String uid = key.split("\\.")[0];
-                    if (!sessions.containsKey(uid)) {
-                        String name = userStore.getProperty(uid + ".name");
-                        String ip = userStore.getProperty(uid + ".ip", "Unknown");
-                        String dev = userStore.getProperty(uid + ".dev", "Unknown");
-                        String timeStr = userStore.getProperty(uid + ".time"); // 读取时间
-
-                        if (name != null) {
-                            UserSession s = new UserSession(uid, ip, dev);
-                            s.setNickname(name);
-                            s.setValuable(true);
-                            // 恢复时间
-                            if (timeStr != null) {
-                                try { s.setLastActive(Long.parseLong(timeStr)); } catch(Exception e){}
-                            }
-
-                            bindSaveListener(s);
-                            sessions.put(uid, s);
-                            Platform.runLater(() -> sessionList.add(s));
-                        }
-                    }
-                }
+        try {
+            for (SessionLog.UserRecord u : userStore.load()) {
+                UserSession s = new UserSession(u.uid(), u.ip(), u.device());
+                s.setNickname(u.name());
+                s.setValuable(true);
+                s.setLastActive(u.lastActive()); // 恢复时间
+                track(s);
             }
         } catch (Exception e) { e.printStackTrace(); }
     }
 
-    private void saveUsers() {
-        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(userFile), StandardCharsets.UTF_8))) {
-            writer.println("# User Database");
-            for (UserSession s : sessions.values()) {
-                if(!s.isValuable())
-                    continue;
-                String uid = s.getUserId();
-                userStore.setProperty(uid + ".name", s.getNickname());
-                userStore.setProperty(uid + ".ip", s.getIp());
-                userStore.setProperty(uid + ".dev", s.getDeviceName());
-                userStore.setProperty(uid + ".time", String.valueOf(s.getLastActive())); // 保存时间
-            }
-            for (String key : userStore.stringPropertyNames()) {
-                writer.println(key + "=" + userStore.getProperty(key));
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+    public void addListener(SessionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 当前内存中的全部会话 (弱一致的视图)
+     */
+    public Collection<UserSession> getSessions() {
+        return sessions.values();
     }
 
-    private void bindSaveListener(UserSession s) {
-        // 任何属性变动都触发保存
-        s.nicknameProperty().addListener(o -> saveUsers());
-        s.ipProperty().addListener(o -> saveUsers()); // IP变了也更新
-        s.lastActiveProperty().addListener(o -> saveUsers()); // 监听时间变化
+    // 任何字段变动都只标记为待保存，由 UserStore 定期合并写出 (每个请求都会刷新活跃时间)
+    private void onSessionChanged(UserSession s) {
+        userStore.markDirty(s);
+        for (SessionListener l : listeners) l.sessionChanged(s);
     }
 
+    /**
+     * 同一 IP 上有多个会话时取最近活跃的一个
+     */
     public UserSession findSessionByIp(String ip) {
-        for (UserSession s : sessions.values()) {
-            if (s.getIp().equals(ip)) return s;
+        Set<UserSession> candidates = sessionsByIp.get(ip);
+        if (candidates == null) return null;
+        UserSession latest = null;
+        for (UserSession s : candidates) {
+            if (latest == null || s.getLastActive() > latest.getLastActive()) latest = s;
         }
-        return null;
+        return latest;
     }
 
     public UserSession getOrCreateSession(String uid, String ip, String userAgent) {
-        // 1. 如果内存里已经有这个活着的会话了，直接返回
-        if (sessions.containsKey(uid)) {
-            UserSession s = sessions.get(uid);
-            s.setIp(ip);
-            s.updateLastActive();
-            return s;
+        // 1. 如果内存里已经有这个活着的会话了，直接返回 (恰好被闲置清理移除时按新会话重建)
+        UserSession existing = sessions.get(uid);
+        if (existing != null && touch(existing, ip)) {
+            return existing;
         }
         // 2. 内存里没有，创建一个新的对象
         UserSession s = new UserSession(uid, ip, parseDevice(userAgent));
-        bindSaveListener(s);
         // 3. 【核心修复】去硬盘（userStore）里查，看他是不是以前登录成功的“老用户”
-        String savedNick = userStore.getProperty(uid + ".name");
+        String savedNick = userStore.getNickname(uid);
         if (savedNick != null) {
             s.setNickname(savedNick);
             s.setValuable(true); // 自动恢复登录态
@@ -113,21 +113,92 @@ public class SessionManager {
             s.setValuable(false); // 标记为未登录/临时访客
         }
 
-        sessions.put(uid, s);
-        Platform.runLater(() -> sessionList.add(s));
-        return s;
+        // 同一 UID 的首批请求可能并发到达，只保留先登记的那个
+        existing = track(s);
+        return existing != null ? existing : s;
     }
     public void removeSession(UserSession s) {
         // 1. 撤销“有价值”标记
         s.setValuable(false);
-        String uid = s.getUserId();
-        userStore.remove(uid + ".name");
-        userStore.remove(uid + ".ip");
-        userStore.remove(uid + ".dev");
-        userStore.remove(uid + ".time");
-        saveUsers();
+        userStore.remove(s.getUserId());
+    }
+
+
+    /**
+     * 记一次登录 / 上传 / 下载 (可在任意线程调用)
+     */
+    public void recordActivity(UserSession s, UserTraffic.Activity activity, long bytes) {
+        if (s == null) return;
+        s.setTraffic(userStore.record(s.getUserId(), activity, bytes));
+    }
+
+    // 登记到 UID 表与 IP 索引并显示在会话列表；UID 已存在时返回已有的会话
+    private UserSession track(UserSession s) {
+        UserSession existing = sessions.putIfAbsent(s.getUserId(), s);
+        if (existing != null) return existing;
+        s.setTraffic(userStore.getTraffic(s.getUserId()));
+        synchronized (s) {
+            indexIp(s, s.getIp()); // 与 touch 互斥，避免按改之前的 IP 登记
+        }
+        s.setChangeListener(this::onSessionChanged);
+        for (SessionListener l : listeners) l.sessionChanged(s);
+        return null;
     }
 
+    /**
+     * 刷新活跃时间，会话换了 IP (如手机切换网络) 时 IP 索引随之更新
+     * 与 evictIdleGuests 在同一把锁 (会话对象) 下进行：会话已被移出 sessions 时不再碰索引，返回 false
+     */
+    private boolean touch(UserSession s, String ip) {
+        synchronized (s) {
+            if (sessions.get(s.getUserId()) != s) return false;
+            String old = s.getIp();
+            if (!ip.equals(old)) {
+                s.setIp(ip);
+                unindexIp(s, old);
+                indexIp(s, ip);
+            }
+            s.updateLastActive();
+            return true;
+        }
+    }
+
+    private void indexIp(UserSession s, String ip) {
+        if (ip == null) return;
+        sessionsByIp.compute(ip, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(s);
+            return set;
+        });
+    }
+
+    private void unindexIp(UserSession s, String ip) {
+        if (ip == null) return;
+        sessionsByIp.computeIfPresent(ip, (k, set) -> {
+            set.remove(s);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private void evictIdleGuests() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (UserSession s : sessions.values()) {
+            if (s.isValuable() || now - s.getLastActive() < GUEST_IDLE_MS) continue;
+            synchronized (s) {
+                // 加锁后再确认一次：期间可能刚有请求用到它 (touch 也持有这把锁)
+                if (s.isValuable() || now - s.getLastActive() < GUEST_IDLE_MS) continue;
+                if (!sessions.remove(s.getUserId(), s)) continue;
+                unindexIp(s, s.getIp());
+                s.setChangeListener(null);
+            }
+            for (SessionListener l : listeners) l.sessionRemoved(s);
+            evicted++;
+        }
+        if (evicted > 0 && AppConfig.getInstance().isDebugMode()) {
+            LogPanel.log("[System] 已移除 " + evicted + " 个闲置访客会话 (当前 " + sessions.size() + " 个)");
+        }
+    }
 
     private String parseDevice(String ua) {
         if (ua == null) return "未知设备";
@@ -138,6 +209,4 @@ public class SessionManager {
         return "浏览器";
     }
 
-    public ObservableList<UserSession> getSessionList() { return sessionList; }
-
 }
\ No newline at end of file
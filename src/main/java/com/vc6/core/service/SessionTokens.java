@@ -0,0 +1,227 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+import com.vc6.model.AppConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * 签名会话令牌：一个 Cookie 同时携带 UID、登录级别与登录到期时间，服务端不保存任何令牌状态
+ * 布局 (33 字节，Base64url 编码后 44 字符)：
+ * [版本 << 4 | 级别][UID 8 字节][登录到期 4 字节 (秒)][PIN 标记 4 字节][HMAC-SHA256 前 16 字节]
+ * 校验只做一次 HMAC 与常量时间比较，不查任何表；缓冲区与摘要对象按线程复用，除 UID 字符串外不产生垃圾。
+ */
+public class SessionTokens {
+
+    private static final String KEY_FILE = "session.key";
+
+    public static final int LEVEL_GUEST = 0;
+    public static final int LEVEL_USER = 1;
+
+    private static final int VERSION = 1;
+    private static final int UID_LEN = 8;
+    private static final int BODY_LEN = 1 + UID_LEN + 4 + 4;
+    private static final int MAC_LEN = 16;
+    private static final int TOKEN_LEN = BODY_LEN + MAC_LEN;
+    private static final int TOKEN_CHARS = TOKEN_LEN / 3 * 4;
+    private static final int BLOCK = 64; // SHA-256 分组长度
+
+    private static final byte[] B64 = new byte[128];
+    static {
+        Arrays.fill(B64, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) B64[alphabet.charAt(i)] = (byte) i;
+    }
+
+    private static final SessionTokens INSTANCE = new SessionTokens();
+
+    private final byte[] ipad = new byte[BLOCK];
+    private final byte[] opad = new byte[BLOCK];
+    private final ThreadLocal<Reader> readers = ThreadLocal.withInitial(Reader::new);
+
+    // PIN 标记：修改 PIN 后旧的登录令牌自动失效，但其中的 UID 仍然可信
+    private record PinTag(String pin, int tag) {}
+    private volatile PinTag pinTag;
+
+    public static SessionTokens getInstance() { return INSTANCE; }
+
+    private SessionTokens() {
+        byte[] key = loadKey();
+        for (int i = 0; i < BLOCK; i++) {
+            byte k = i < key.length ? key[i] : 0;
+            ipad[i] = (byte) (k ^ 0x36);
+            opad[i] = (byte) (k ^ 0x5c);
+        }
+    }
+
+    /**
+     * 校验结果，仅在取得它的线程上、下一次 verify 之前有效
+     */
+    public static final class Reader {
+        private final MessageDigest md = sha256();
+        private final byte[] token = new byte[TOKEN_LEN];
+        private final byte[] digest = new byte[32];
+        private String uid;
+        private boolean authed;
+
+        public String uid() { return uid; }
+
+        /** 登录级别、未过期且签发时的 PIN 与当前一致 */
+        public boolean authed() { return authed; }
+    }
+
+    /**
+     * 校验 s[from, to) 处的令牌；签名不对返回 null
+     */
+    public Reader verify(CharSequence s, int from, int to) {
+        if (to - from != TOKEN_CHARS) return null;
+        Reader r = readers.get();
+        if (!decode(s, from, r.token)) return null;
+        if ((r.token[0] & 0xFF) >>> 4 != VERSION) return null;
+
+        if (!mac(r.md, r.token, r.digest)) return null;
+        int diff = 0;
+        for (int i = 0; i < MAC_LEN; i++) diff |= r.digest[i] ^ r.token[BODY_LEN + i];
+        if (diff != 0) return null;
+
+        long expiry = readInt(r.token, 1 + UID_LEN) & 0xFFFFFFFFL;
+        r.authed = (r.token[0] & 0x0F) == LEVEL_USER
+                && System.currentTimeMillis() / 1000 < expiry
+                && readInt(r.token, 1 + UID_LEN + 4) == currentPinTag();
+        r.uid = new String(r.token, 1, UID_LEN, StandardCharsets.ISO_8859_1);
+        return r;
+    }
+
+    /**
+     * 签发令牌 (只在登录和首次访问时调用)
+     * @param authUntil 登录到期时间 (毫秒)，访客为 0
+     */
+    public String issue(String uid, int level, long authUntil) {
+        if (!isValidUid(uid)) throw new IllegalArgumentException("uid");
+        Reader r = readers.get();
+        byte[] t = new byte[TOKEN_LEN];
+        t[0] = (byte) (VERSION << 4 | level);
+        for (int i = 0; i < UID_LEN; i++) t[1 + i] = (byte) uid.charAt(i);
+        writeInt(t, 1 + UID_LEN, (int) Math.min(authUntil / 1000, 0xFFFFFFFFL));
+        writeInt(t, 1 + UID_LEN + 4, level == LEVEL_USER ? currentPinTag() : 0);
+        mac(r.md, t, r.digest);
+        System.arraycopy(r.digest, 0, t, BODY_LEN, MAC_LEN);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(t);
+    }
+
+    /**
+     * 能否放进令牌：8 个可出现在 Cookie 值里的 ASCII 字符 (新生成的 UID 都满足)
+     */
+    public static boolean isValidUid(String uid) {
+        if (uid == null || uid.length() != UID_LEN) return false;
+        for (int i = 0; i < UID_LEN; i++) {
+            char c = uid.charAt(i);
+            if (c <= 0x20 || c >= 0x7f || c == ';' || c == ',' || c == '"' || c == '\\') return false;
+        }
+        return true;
+    }
+
+    private int currentPinTag() {
+        String pin = AppConfig.getInstance().getRemotePin();
+        PinTag t = pinTag;
+        if (t == null || !Objects.equals(t.pin(), pin)) {
+            byte[] data = ("pin:" + (pin == null ? "" : pin)).getBytes(StandardCharsets.UTF_8);
+            MessageDigest md = sha256();
+            md.update(ipad);
+            md.update(data);
+            byte[] inner = md.digest();
+            md.update(opad);
+            md.update(inner);
+            t = new PinTag(pin, readInt(md.digest(), 0));
+            pinTag = t;
+        }
+        return t.tag();
+    }
+
+    // HMAC-SHA256(key, token[0, BODY_LEN)) -> out；手写两轮摘要以便复用缓冲区
+    private boolean mac(MessageDigest md, byte[] token, byte[] out) {
+        try {
+            md.reset();
+            md.update(ipad);
+            md.update(token, 0, BODY_LEN);
+            md.digest(out, 0, out.length);
+            md.update(opad);
+            md.update(out, 0, out.length);
+            md.digest(out, 0, out.length);
+            return true;
+        } catch (DigestException e) {
+            return false;
+        }
+    }
+
+    private static boolean decode(CharSequence s, int from, byte[] out) {
+        for (int i = 0, o = 0; i < TOKEN_CHARS; i += 4, o += 3) {
+            int bits = 0;
+            for (int j = 0; j < 4; j++) {
+                char c = s.charAt(from + i + j);
+                int v = c < 128 ? B64[c] : -1;
+                if (v < 0) return false;
+                bits = bits << 6 | v;
+            }
+            out[o] = (byte) (bits >> 16);
+            out[o + 1] = (byte) (bits >> 8);
+            out[o + 2] = (byte) bits;
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xFF) << 24 | (b[off + 1] & 0xFF) << 16 | (b[off + 2] & 0xFF) << 8 | (b[off + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 签名密钥保存在本地，重启后已发出的令牌仍然有效
+    private static byte[] loadKey() {
+        Path file = Path.of(KEY_FILE);
+        try {
+            if (Files.exists(file)) {
+                byte[] key = Files.readAllBytes(file);
+                if (key.length == 32) return key;
+                LogPanel.log("[Error] 会话密钥文件损坏，已重新生成 (所有设备需重新登录)");
+            }
+        } catch (IOException e) {
+            LogPanel.log("[Error] 读取会话密钥失败: " + e.getMessage());
+        }
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        try {
+            Path tmp = file.resolveSibling(KEY_FILE + ".tmp");
+            Files.write(tmp, key);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LogPanel.log("[Error] 保存会话密钥失败，重启后需重新登录: " + e.getMessage());
+        }
+        return key;
+    }
+}
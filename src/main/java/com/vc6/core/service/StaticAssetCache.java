@@ -0,0 +1,129 @@
+package com.vc6.core.service;
+
+import com.vc6.gui.component.LogPanel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态资源内存缓存
+ * /static/* 只从 classpath 读取一次，内容放在不可释放的直接内存 ByteBuf 中，
+ * 每次响应只发出 retainedDuplicate (共享底层内存，零拷贝)。
+ * 文本类资源额外预压缩一份 gzip 版本。
+ */
+public class StaticAssetCache {
+
+    // 页面首屏必用的资源，启动时预热；其余资源在首次请求时加载
+    private static final List<String> PRELOAD = List.of(
+            "/static/bootstrap.min.css",
+            "/static/bootstrap-icons.css",
+            "/static/bootstrap.bundle.min.js",
+            "/static/fonts/bootstrap-icons.woff2",
+            "/static/fonts/bootstrap-icons.woff",
+            "/static/icon.png"
+    );
+
+    private static final Map<String, String> MIME_TYPES = Map.of(
+            "css", "text/css; charset=UTF-8",
+            "js", "application/javascript; charset=UTF-8",
+            "json", "application/json; charset=UTF-8",
+            "woff", "font/woff",
+            "woff2", "font/woff2",
+            "png", "image/png",
+            "svg", "image/svg+xml",
+            "ico", "image/x-icon"
+    );
+
+    /**
+     * @param gzip 预压缩版本，不值得压缩 (字体、图片) 时为 null
+     */
+    public record Asset(String mimeType, String etag, String version, ByteBuf identity, ByteBuf gzip) {
+    }
+
+    private static final StaticAssetCache INSTANCE = new StaticAssetCache();
+
+    // 只缓存确实存在的资源 (数量由 classpath 决定)；不存在的路径不缓存，否则任意请求都能让它无限增长
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
+    public static StaticAssetCache getInstance() {
+        return INSTANCE;
+    }
+
+    private StaticAssetCache() {
+    }
+
+    public void preload() {
+        long bytes = 0;
+        for (String path : PRELOAD) {
+            Asset asset = get(path);
+            if (asset != null) bytes += asset.identity().readableBytes();
+        }
+        LogPanel.log("[System] 静态资源已缓存: " + PRELOAD.size() + " 个, " + bytes / 1024 + " KB");
+    }
+
+    /**
+     * @return 不存在时返回 null
+     */
+    public Asset get(String path) {
+        // 只接受 /static/ 下的规范路径，防止借缓存读取 classpath 中的其它文件，或用同一资源的不同写法占用缓存
+        if (!path.startsWith("/static/") || path.contains("..") || path.contains("//")
+                || path.contains("/./") || path.contains("\\")) return null;
+        return assets.computeIfAbsent(path, this::load); // load 返回 null 时不建立映射
+    }
+
+    /**
+     * 生成带内容版本号的 URL，页面引用它即可让浏览器永久缓存 (内容变化时版本号随之变化)
+     */
+    public String url(String path) {
+        Asset asset = get(path);
+        return asset == null ? path : path + "?v=" + asset.version();
+    }
+
+    private Asset load(String path) {
+        try (InputStream is = getClass().getResourceAsStream(path)) {
+            if (is == null) return null;
+            byte[] bytes = is.readAllBytes();
+
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+            String ext = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+            String mime = MIME_TYPES.getOrDefault(ext, "application/octet-stream");
+
+            ByteBuf gzip = null;
+            if (isCompressible(mime)) {
+                byte[] compressed = gzip(bytes);
+                if (compressed.length < bytes.length) gzip = toDirect(compressed);
+            }
+            return new Asset(mime, "\"" + hash.substring(0, 32) + "\"", hash.substring(0, 12), toDirect(bytes), gzip);
+        } catch (Exception e) {
+            LogPanel.log("[Error] 静态资源加载失败: " + path + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    private static boolean isCompressible(String mime) {
+        return mime.startsWith("text/") || mime.startsWith("application/") || mime.startsWith("image/svg");
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {{ def.setLevel(java.util.zip.Deflater.BEST_COMPRESSION); }}) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    // 常驻内存，引用计数永不归零
+    private static ByteBuf toDirect(byte[] bytes) {
+        ByteBuf buf = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        return Unpooled.unreleasableBuffer(buf.asReadOnly());
+    }
+}
@@ -0,0 +1,90 @@
+package com.vc6.gui;
+
+import com.vc6.core.service.SessionManager;
+import com.vc6.model.SessionRow;
+import com.vc6.model.UserSession;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.Observable;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.util.Duration;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话列表的界面适配
+ * Netty 线程上的会话变化只登记到并发表里 (同一会话多次变化合并为一项)，FX 线程按固定帧率取出，
+ * 一次性增删、刷新 ObservableList。大量客户端同时涌入也只是每帧一次批量更新，不会塞满 FX 事件队列。
+ */
+public class SessionListAdapter implements SessionManager.SessionListener {
+
+    private static final Duration FRAME = Duration.millis(200);
+
+    private static SessionListAdapter instance;
+
+    // 等待同步到界面的变化：uid -> 会话 (empty 表示移除)
+    private final Map<String, Optional<UserSession>> pending = new ConcurrentHashMap<>();
+    private final Map<String, SessionRow> rowsByUid = new HashMap<>(); // 只在 FX 线程访问
+    private final ObservableList<SessionRow> rows = FXCollections.observableArrayList(
+            row -> new Observable[]{ row.valuableProperty() }
+    );
+
+    /**
+     * 只能在 FX 线程调用
+     */
+    public static SessionListAdapter getInstance() {
+        if (instance == null) instance = new SessionListAdapter();
+        return instance;
+    }
+
+    private SessionListAdapter() {
+        SessionManager manager = SessionManager.getInstance();
+        manager.addListener(this);
+        for (UserSession s : manager.getSessions()) sessionChanged(s);
+
+        Timeline frame = new Timeline(new KeyFrame(FRAME, e -> drain()));
+        frame.setCycleCount(Animation.INDEFINITE);
+        frame.play();
+    }
+
+    public ObservableList<SessionRow> getRows() {
+        return rows;
+    }
+
+    @Override
+    public void sessionChanged(UserSession s) {
+        pending.put(s.getUserId(), Optional.of(s));
+    }
+
+    @Override
+    public void sessionRemoved(UserSession s) {
+        pending.put(s.getUserId(), Optional.empty());
+    }
+
+    private void drain() {
+        if (pending.isEmpty()) return;
+        List<SessionRow> added = new ArrayList<>();
+        Set<SessionRow> removed = new HashSet<>();
+        for (String uid : pending.keySet()) {
+            Optional<UserSession> change = pending.remove(uid);
+            if (change == null) continue;
+            SessionRow row = rowsByUid.get(uid);
+            if (change.isEmpty()) {
+                if (row != null) removed.add(rowsByUid.remove(uid));
+            } else if (row != null && row.getSession() == change.get()) {
+                row.update();
+            } else {
+                // 新会话，或同一 UID 被移除后又重新建立
+                if (row != null) removed.add(row);
+                SessionRow fresh = new SessionRow(change.get());
+                rowsByUid.put(uid, fresh);
+                added.add(fresh);
+            }
+        }
+        if (!removed.isEmpty()) rows.removeIf(removed::contains);
+        if (!added.isEmpty()) rows.addAll(added);
+    }
+}
@@ -1,7 +1,9 @@
 package com.vc6.gui.view;
 
 import atlantafx.base.theme.Styles;
+import com.vc6.core.BlockingIoExecutor;
 import com.vc6.core.NettyServer;
+import com.vc6.core.service.QuickShareExpiry;
 import com.vc6.model.AppConfig;
 import com.vc6.model.ServerMode;
 import com.vc6.utils.IpUtils;
@@ -43,6 +45,7 @@ public class DashboardView {
     private XYChart.Series<Number, Number> downloadSeries;
 
     private Label speedLabel;
+    private Label ioQueueLabel;
 
     private Timer monitorTimer;
     private int timeSeconds = 0;
@@ -126,7 +129,10 @@ public class DashboardView {
         speedLabel = new Label("↑ 0 KB/s   ↓ 0 KB/s");
         speedLabel.setStyle("-fx-font-family: 'monospace'; -fx-font-size: 15px;");
 
-        titleBox.getChildren().addAll(chartTitle, speedLabel);
+        ioQueueLabel = new Label();
+        ioQueueLabel.getStyleClass().add(Styles.TEXT_MUTED);
+
+        titleBox.getChildren().addAll(chartTitle, speedLabel, ioQueueLabel);
 
         NumberAxis xAxis = new NumberAxis();
         xAxis.setLabel("时间");
@@ -322,8 +328,16 @@ public class DashboardView {
                     double uploadSpeed = readBytes / (1024.0 * 1024.0);
 
 
+                    BlockingIoExecutor io = NettyServer.getIoExecutor();
+                    String ioText = io == null ? "" : String.format("I/O 队列 %d (峰值 %d, 拒绝 %d)",
+                            io.getPendingTasks(), io.getPeakPending(), io.getRejectedCount());
+                    QuickShareExpiry expiry = QuickShareExpiry.getInstance();
+                    String statusText = expiry.getExpiredCount() == 0 ? ioText : ioText + String.format("   快传已清理 %d 项 (释放 %.1f MB)",
+                            expiry.getExpiredCount(), expiry.getReclaimedBytes() / (1024.0 * 1024.0));
+
                     long nowSeconds = System.currentTimeMillis() / 1000;
                     Platform.runLater(() -> {
+                        ioQueueLabel.setText(statusText);
                         uploadSeries.getData().add(new XYChart.Data<>(nowSeconds, uploadSpeed));
                         downloadSeries.getData().add(new XYChart.Data<>(nowSeconds, downloadSpeed));
 
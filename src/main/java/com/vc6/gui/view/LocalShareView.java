@@ -1,6 +1,7 @@
 package com.vc6.gui.view;
 
 import atlantafx.base.theme.Styles;
+import com.vc6.core.service.DirectoryCache;
 import com.vc6.gui.component.ModeActionButton;
 import com.vc6.gui.component.SimpleToggleSwitch;
 import com.vc6.model.AppConfig;
@@ -18,7 +19,6 @@ import javafx.stage.DirectoryChooser;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
 
 public class LocalShareView {
@@ -303,22 +303,17 @@ public class LocalShareView {
         browsePathField.setText(dir.getAbsolutePath());
 
         ObservableList<FileItem> data = FXCollections.observableArrayList();
-        File[] files = dir.listFiles();
-
-        if (files != null) {
-            Arrays.sort(files, (f1, f2) -> {
-                if (f1.isDirectory() && !f2.isDirectory()) return -1;
-                if (!f1.isDirectory() && f2.isDirectory()) return 1;
-                return f1.getName().compareToIgnoreCase(f2.getName());
-            });
+        // 与网页端共用目录缓存，排序结果也一并复用
+        DirectoryCache.Listing listing = DirectoryCache.getInstance().get(dir);
 
+        if (listing != null) {
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
 
-            for (File f : files) {
-                if (f.isHidden() || !f.canRead()) continue;
-                String sizeStr = f.isDirectory() ? "-" : formatSize(f.length());
+            for (DirectoryCache.Entry f : listing.byName()) {
+                if (!f.isVisible()) continue;
+                String sizeStr = f.directory() ? "-" : formatSize(f.length());
                 String dateStr = sdf.format(new Date(f.lastModified()));
-                data.add(new FileItem(f.getName(), sizeStr, dateStr, f.isDirectory(), f.getAbsolutePath()));
+                data.add(new FileItem(f.name(), sizeStr, dateStr, f.directory(), f.file().getAbsolutePath()));
             }
         }
         fileTable.setItems(data);
@@ -1,6 +1,9 @@
 package com.vc6.gui.view;
 
 import atlantafx.base.theme.Styles;
+import com.vc6.core.service.MessagePreviewCache;
+import com.vc6.core.service.QuickShareFeed;
+import com.vc6.core.service.QuickShareIndex;
 import com.vc6.core.service.QuickShareService; // 引入新服务
 import com.vc6.gui.component.ModeActionButton;
 import com.vc6.model.ServerMode;
@@ -23,14 +26,14 @@ public class QuickShareView {
 
     private final BorderPane view;
     private final QuickShareService service; // 持有 Service
-    private ListView<File> feedList;
-    private Timer refreshTimer;
+    private ListView<QuickShareIndex.Item> feedList;
 
     public QuickShareView() {
         this.service = new QuickShareService(); // 初始化 Service
         this.view = new BorderPane();
         initView();
-        startAutoRefresh();
+        // 文件增删 (含过期清理) 由推送驱动刷新，不再轮询
+        QuickShareFeed.getInstance().addListener(event -> refreshFeed());
     }
 
     private void initView() {
@@ -161,31 +164,22 @@ public class QuickShareView {
     }
 
     private void refreshFeed() {
-        List<File> files = service.getFeedList(); // 调用 Service
-        Platform.runLater(() -> feedList.getItems().setAll(files));
-    }
-
-    private void startAutoRefresh() {
-        refreshTimer = new Timer(true);
-        refreshTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                if (view.getScene() != null) refreshFeed();
-            }
-        }, 1000, 2000);
+        List<QuickShareIndex.Item> items = service.getFeedList(); // 调用 Service
+        Platform.runLater(() -> feedList.getItems().setAll(items));
     }
 
 
     public BorderPane getView() { return view; }
 
 
-    private class FeedCell extends ListCell<File> {
+    private class FeedCell extends ListCell<QuickShareIndex.Item> {
         private final SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss");
         private static final String SVG_COPY = "M16 1H4c-1.1 0-2 .9-2 2v14h2V3h12V1zm3 4H8c-1.1 0-2 .9-2 2v14c0 1.1.9 2 2 2h11c1.1 0 2-.9 2-2V7c0-1.1-.9-2-2-2zm0 16H8V7h11v14z";
+        private static final String SVG_PIN = "M16 9V4h1c.55 0 1-.45 1-1s-.45-1-1-1H7c-.55 0-1 .45-1 1s.45 1 1 1h1v5c0 1.66-1.34 3-3 3v2h5.97v7l1 1 1-1v-7H19v-2c-1.66 0-3-1.34-3-3z";
         private static final String SVG_TRASH = "M6 19c0 1.1.9 2 2 2h8c1.1 0 2-.9 2-2V7H6v12zM19 4h-3.5l-1-1h-5l-1 1H5v2h14V4z";
 
         @Override
-        protected void updateItem(File item, boolean empty) {
+        protected void updateItem(QuickShareIndex.Item item, boolean empty) {
             super.updateItem(item, empty);
             if (empty || item == null) {
                 setGraphic(null); setText(null); setStyle(""); setPadding(Insets.EMPTY);
@@ -230,33 +224,22 @@ public class QuickShareView {
                 sizeLabel.getStyleClass().add(Styles.TEXT_SMALL);
                 sizeLabel.setStyle("-fx-text-fill: -color-fg-muted;");
 
-                boolean isTextMsg = item.getName().endsWith(".lanmsg");
+                boolean isTextMsg = item.name().endsWith(".lanmsg");
                 if (isTextMsg) {
                     iconLabel.setText("💬");
-                    String content = "";
-                    try { content = Files.readString(item.toPath()); } catch (Exception e){}
-
-                    String displayContent = content;
-
-                    if (displayContent.length() > 200) {
-                        displayContent = displayContent.substring(0, 200) + "...";
-                    }
-
-                    String[] lines = displayContent.split("\n");
-                    if (lines.length > 5) {
-                        displayContent = String.join("\n", Arrays.copyOf(lines, 5)) + "...";
-                    }
+                    // 列表只显示摘要，复制时再读全文
+                    MessagePreviewCache.Preview preview = MessagePreviewCache.getInstance().get(item.file(), item.lastModified(), item.length());
 
-                    mainText.setText(displayContent);
+                    mainText.setText(preview.snippet());
                     mainText.setWrapText(true);
                     mainText.setMaxWidth(Double.MAX_VALUE);
                     if (getListView() != null) {
                         mainText.prefWidthProperty().bind(getListView().widthProperty().subtract(240));
                     }
-                    sizeLabel.setText(content.length() + " 字");
+                    sizeLabel.setText(preview.length() + " 字");
                 } else {
                     iconLabel.setText("📄");
-                    mainText.setText(item.getName());
+                    mainText.setText(item.name());
                     sizeLabel.setText(formatSize(item.length()));
 
                 }
@@ -272,21 +255,31 @@ public class QuickShareView {
                 copyBtn.setOnAction(e -> {
                     ClipboardContent cc = new ClipboardContent();
                     if (isTextMsg) {
-                        try { cc.putString(Files.readString(item.toPath())); } catch(Exception ex){}
+                        try { cc.putString(Files.readString(item.file().toPath())); } catch(Exception ex){}
                     } else {
-                        cc.putFiles(List.of(item));
+                        cc.putFiles(List.of(item.file()));
                     }
                     Clipboard.getSystemClipboard().setContent(cc);
-                    MessageUtils.showToast("已复制 %s".formatted(isTextMsg ? "文本":item.getName()));
+                    MessageUtils.showToast("已复制 %s".formatted(isTextMsg ? "文本":item.name()));
                 });
                 buttons.getChildren().add(copyBtn);
 
+                // 固定：该条目不参与自动清理
+                boolean pinned = item.expireHours() == 0;
+                Button pinBtn = createIconBtn(SVG_PIN, pinned ? "取消固定" : "固定 (不自动清理)");
+                if (pinned) pinBtn.getStyleClass().add(Styles.ACCENT);
+                pinBtn.setOnAction(e -> {
+                    service.setPinned(item.file(), !pinned);
+                    refreshFeed();
+                });
+                buttons.getChildren().add(pinBtn);
+
                 Button delBtn = createIconBtn(SVG_TRASH, "删除");
                 delBtn.getStyleClass().add(Styles.DANGER);
                 delBtn.setOnAction(e -> {
-                    service.deleteFile(item);
+                    service.deleteFile(item.file());
                     getListView().getItems().remove(item);
-                    MessageUtils.showToast("已删除 %s".formatted(isTextMsg ? "文本":item.getName()));
+                    MessageUtils.showToast("已删除 %s".formatted(isTextMsg ? "文本":item.name()));
                 });
                 buttons.getChildren().add(delBtn);
 
@@ -2,9 +2,11 @@ package com.vc6.gui.view;
 
 import atlantafx.base.theme.Styles;
 import com.vc6.core.service.SessionManager;
+import com.vc6.gui.SessionListAdapter;
 import com.vc6.gui.component.SimpleToggleSwitch;
 import com.vc6.model.AppConfig;
-import com.vc6.model.UserSession;
+import com.vc6.model.SessionRow;
+import com.vc6.model.UserTraffic;
 import com.vc6.utils.MessageUtils;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -32,8 +34,8 @@ public class SessionsView {
 
         AppConfig config = AppConfig.getInstance();
 
-        javafx.collections.transformation.FilteredList<UserSession> filteredData =
-                new javafx.collections.transformation.FilteredList<>(SessionManager.getInstance().getSessionList(), s -> true);
+        javafx.collections.transformation.FilteredList<SessionRow> filteredData =
+                new javafx.collections.transformation.FilteredList<>(SessionListAdapter.getInstance().getRows(), s -> true);
 
 
         SimpleToggleSwitch showAllCheck = new SimpleToggleSwitch("显示所有连接 (包括未认证访客)");
@@ -50,14 +52,14 @@ public class SessionsView {
         header.getChildren().addAll(title, spacer, showAllCheck);
         view.setTop(header);
 
-        TableView<UserSession> table = new TableView<>();
+        TableView<SessionRow> table = new TableView<>();
         Label emptyLabel = new Label("访问记录为空");
         table.setPlaceholder(emptyLabel);
         table.setSelectionModel(null);
         table.setItems(filteredData);
 
         table.setRowFactory(tv -> {
-            TableRow<UserSession> row = new TableRow<>();
+            TableRow<SessionRow> row = new TableRow<>();
             javafx.beans.value.ChangeListener<Boolean> valuableChangeListener = (obs, oldVal, newVal) -> {
                 if (row.getItem() != null) {
                     row.setOpacity(newVal ? 1.0 : 0.6);
@@ -80,16 +82,16 @@ public class SessionsView {
             return row;
         });
 
-        TableColumn<UserSession, String> idCol = new TableColumn<>("ID");
+        TableColumn<SessionRow, String> idCol = new TableColumn<>("ID");
         idCol.setCellValueFactory(d -> new javafx.beans.property.SimpleStringProperty(d.getValue().getUserId()));
         idCol.setMinWidth(110);
         idCol.setMaxWidth(110);
         idCol.setReorderable(false);
 
-        TableColumn<UserSession, Boolean> statusCol = new TableColumn<>("状态");
+        TableColumn<SessionRow, Boolean> statusCol = new TableColumn<>("状态");
         statusCol.setCellValueFactory(d -> d.getValue().valuableProperty());
         statusCol.setReorderable(false);
-        statusCol.setCellFactory(col -> new TableCell<UserSession, Boolean>() {
+        statusCol.setCellFactory(col -> new TableCell<SessionRow, Boolean>() {
             @Override
             protected void updateItem(Boolean isValuable, boolean empty) {
                 super.updateItem(isValuable, empty);
@@ -110,24 +112,24 @@ public class SessionsView {
         statusCol.setMinWidth(100);
         statusCol.setMaxWidth(100);
 
-        TableColumn<UserSession, String> nameCol = new TableColumn<>("用户名");
+        TableColumn<SessionRow, String> nameCol = new TableColumn<>("用户名");
         nameCol.setCellValueFactory(d -> d.getValue().nicknameProperty());
         nameCol.setMinWidth(80);
         nameCol.setReorderable(false);
-        TableColumn<UserSession, String> deviceCol = new TableColumn<>("型号");
+        TableColumn<SessionRow, String> deviceCol = new TableColumn<>("型号");
         deviceCol.setCellValueFactory(d -> d.getValue().deviceNameProperty());
         deviceCol.setMinWidth(100);
         deviceCol.setMaxWidth(100);
         deviceCol.setReorderable(false);
-        TableColumn<UserSession, String> ipCol = new TableColumn<>("IP 地址");
+        TableColumn<SessionRow, String> ipCol = new TableColumn<>("IP 地址");
         ipCol.setCellValueFactory(d -> d.getValue().ipProperty());
         ipCol.setMinWidth(90);
         ipCol.setReorderable(false);
-        TableColumn<UserSession, Number> timeCol = new TableColumn<>("上次活跃");
+        TableColumn<SessionRow, Number> timeCol = new TableColumn<>("上次活跃");
         timeCol.setMinWidth(100);
         timeCol.setReorderable(false);
         timeCol.setCellValueFactory(d -> d.getValue().lastActiveProperty());
-        timeCol.setCellFactory(col -> new TableCell<UserSession, Number>() {
+        timeCol.setCellFactory(col -> new TableCell<SessionRow, Number>() {
             private final SimpleDateFormat sdf = new SimpleDateFormat("MM-dd HH:mm:ss");
             @Override
             protected void updateItem(Number item, boolean empty) {
@@ -138,8 +140,27 @@ public class SessionsView {
         });
 
 
+        // 累计流量：上传/下载的文件数与字节数 (来自用户日志，重启后保留)
+        TableColumn<SessionRow, UserTraffic> trafficCol = new TableColumn<>("流量");
+        trafficCol.setMinWidth(150);
+        trafficCol.setReorderable(false);
+        trafficCol.setCellValueFactory(d -> d.getValue().trafficProperty());
+        trafficCol.setCellFactory(col -> new TableCell<SessionRow, UserTraffic>() {
+            @Override
+            protected void updateItem(UserTraffic t, boolean empty) {
+                super.updateItem(t, empty);
+                if (empty || t == null) {
+                    setText(null);
+                    setTooltip(null);
+                } else {
+                    setText("↑ " + formatSize(t.uploadBytes()) + "  ↓ " + formatSize(t.downloadBytes()));
+                    setTooltip(new Tooltip("登录 " + t.logins() + " 次\n上传 " + t.uploads() + " 个文件\n下载 " + t.downloads() + " 个文件"));
+                }
+            }
+        });
+
         // 【新增】操作列 (踢出按钮)
-        TableColumn<UserSession, Void> actionCol = new TableColumn<>("");
+        TableColumn<SessionRow, Void> actionCol = new TableColumn<>("");
         actionCol.setMinWidth(70);
         actionCol.setMaxWidth(70);
         actionCol.setReorderable(false);
@@ -149,9 +170,9 @@ public class SessionsView {
                 btn.getStyleClass().addAll(Styles.SMALL, Styles.DANGER, Styles.BUTTON_OUTLINED);
                 btn.setFocusTraversable(false);
                 btn.setOnAction(e -> {
-                    UserSession s = getTableView().getItems().get(getIndex());
+                    SessionRow s = getTableView().getItems().get(getIndex());
                     if (MessageUtils.showConfirm("确认踢出", "确定要移除用户 " + s.getNickname() + " 吗？\n如果开启了安全验证，他将需要重新登录。")) {
-                        SessionManager.getInstance().removeSession(s);
+                        SessionManager.getInstance().removeSession(s.getSession());
                     }
                 });
             }
@@ -163,7 +184,7 @@ public class SessionsView {
             }
         });
 
-        table.getColumns().addAll(idCol, statusCol,nameCol, ipCol,deviceCol, timeCol, actionCol);
+        table.getColumns().addAll(idCol, statusCol,nameCol, ipCol,deviceCol, timeCol, trafficCol, actionCol);
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
 
@@ -171,5 +192,12 @@ public class SessionsView {
         BorderPane.setMargin(table, new Insets(20, 0, 0, 0));
     }
 
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp - 1) + "";
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
+    }
+
     public BorderPane getView() { return view; }
 }
\ No newline at end of file
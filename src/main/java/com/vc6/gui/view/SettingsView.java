@@ -4,11 +4,14 @@ import atlantafx.base.theme.PrimerDark;
 import atlantafx.base.theme.PrimerLight;
 import atlantafx.base.theme.Styles;
 import com.vc6.core.NettyServer;
+import com.vc6.core.ServerTransport;
 import com.vc6.core.persistence.ConfigStore;
+import com.vc6.core.persistence.UserStore;
 import com.vc6.gui.component.SimpleToggleSwitch;
 import com.vc6.model.AppConfig;
 import com.vc6.utils.IpUtils;
 import com.vc6.model.ServerMode;
+import com.vc6.model.TuningPreset;
 import com.vc6.utils.MessageUtils;
 import javafx.application.Application;
 import javafx.geometry.Insets;
@@ -54,6 +57,7 @@ public class SettingsView {
                 createSection("常规", createGeneralSettings()),
                 createSection("安全", createSecuritySettings()),
                 createSection("传输", createStorageSettings()),
+                createSection("性能", createTuningSettings()),
                 createSection("外观", createAppearanceSettings()),
                 createSection("系统", createSystemSettings()),
                 createSection("关于", createAboutSettings())
@@ -144,6 +148,25 @@ public class SettingsView {
         trayCheck.selectedProperty().bindBidirectional(AppConfig.getInstance().minimizeToTrayProperty());
         addGridRow(grid, 3, "托盘设置:", trayCheck);
 
+        // 1.4 网络传输层 (重启服务后生效)
+        ComboBox<ServerTransport> transportBox = new ComboBox<>();
+        for (ServerTransport t : ServerTransport.values()) {
+            if (t.isAvailable()) transportBox.getItems().add(t);
+        }
+        transportBox.setConverter(new javafx.util.StringConverter<>() {
+            @Override public String toString(ServerTransport t) { return t == null ? "" : t.getDescription(); }
+            @Override public ServerTransport fromString(String s) { return null; }
+        });
+        transportBox.setValue(ServerTransport.fromKey(AppConfig.getInstance().getTransport()));
+        transportBox.setPrefWidth(250);
+        transportBox.disableProperty().bind(
+                AppConfig.getInstance().serverModeProperty().isNotEqualTo(ServerMode.STOPPED)
+        );
+        transportBox.valueProperty().addListener((obs, old, val) -> {
+            if (val != null) AppConfig.getInstance().setTransport(val.getKey());
+        });
+        addGridRow(grid, 4, "传输引擎:", transportBox);
+
         return grid;
     }
 
@@ -274,8 +297,8 @@ public class SettingsView {
         // 2.3 安全限制
         TextField fileLimitField = new TextField(String.valueOf(AppConfig.getInstance().getMaxFileSizeMb()));
         fileLimitField.setPrefWidth(80);
-        // 使用工具方法：范围 1MB - 2047MB (防止 Netty 溢出)
-        setupNumericField(fileLimitField, AppConfig.getInstance().maxFileSizeMbProperty(), 1, 2047);
+        // 使用工具方法：范围 1MB - 100GB (上传已改为流式落盘，不再受聚合器 2GB 上限约束)
+        setupNumericField(fileLimitField, AppConfig.getInstance().maxFileSizeMbProperty(), 1, 102400);
 
         // 2. 文本字数上限输入框
         TextField textLimitField = new TextField(String.valueOf(AppConfig.getInstance().getMaxTextLength()));
@@ -294,6 +317,86 @@ public class SettingsView {
         return grid;
     }
 
+    // ================= 2.5 性能调优 =================
+    private Node createTuningSettings() {
+        GridPane grid = createGrid();
+        AppConfig config = AppConfig.getInstance();
+
+        // 预设：切换时批量写入数值；手动改动任何数值则自动变为“自定义”
+        ComboBox<TuningPreset> presetBox = new ComboBox<>();
+        presetBox.getItems().addAll(TuningPreset.values());
+        presetBox.setConverter(new javafx.util.StringConverter<>() {
+            @Override public String toString(TuningPreset p) { return p == null ? "" : p.getDescription(); }
+            @Override public TuningPreset fromString(String s) { return null; }
+        });
+        presetBox.setValue(TuningPreset.fromKey(config.getTuningPreset()));
+        presetBox.setPrefWidth(250);
+
+        boolean[] applyingPreset = {false};
+        presetBox.valueProperty().addListener((obs, old, val) -> {
+            if (val == null) return;
+            applyingPreset[0] = true;
+            val.applyTo(config);
+            applyingPreset[0] = false;
+            config.setTuningPreset(val.getKey());
+        });
+        javafx.beans.InvalidationListener markCustom = o -> {
+            if (!applyingPreset[0]) presetBox.setValue(TuningPreset.CUSTOM);
+        };
+
+        Label hint = new Label("重启服务后生效");
+        hint.setStyle("-fx-font-size: 12px; -fx-text-fill: -color-fg-muted;");
+        HBox presetRow = new HBox(10, presetBox, hint);
+        presetRow.setAlignment(Pos.CENTER_LEFT);
+        addGridRow(grid, 0, "调优预设:", presetRow);
+
+        addGridRow(grid, 1, "工作线程:", createTuningField(config.workerThreadsProperty(), 0, 256, "个 (0 = 自动)", markCustom));
+        HBox bufferBox = new HBox(10,
+                createTuningField(config.sendBufferKbProperty(), 0, 65536, "KB 发送", markCustom),
+                createTuningField(config.receiveBufferKbProperty(), 0, 65536, "KB 接收 (0 = 系统默认)", markCustom));
+        addGridRow(grid, 2, "Socket 缓冲:", bufferBox);
+        HBox waterBox = new HBox(10,
+                createTuningField(config.writeBufferLowKbProperty(), 1, 65536, "KB 低水位", markCustom),
+                createTuningField(config.writeBufferHighKbProperty(), 1, 65536, "KB 高水位", markCustom));
+        addGridRow(grid, 3, "写缓冲水位:", waterBox);
+        addGridRow(grid, 4, "连接队列:", createTuningField(config.backlogProperty(), 1, 65535, "backlog", markCustom));
+
+        SimpleToggleSwitch pooledCheck = new SimpleToggleSwitch("使用内存池 (Pooled ByteBuf)");
+        pooledCheck.selectedProperty().bindBidirectional(config.pooledAllocatorProperty());
+        config.pooledAllocatorProperty().addListener(markCustom);
+        addGridRow(grid, 5, "内存分配:", pooledCheck);
+
+        SimpleToggleSwitch noDelayCheck = new SimpleToggleSwitch("禁用 Nagle 算法 (TCP_NODELAY)");
+        noDelayCheck.selectedProperty().bindBidirectional(config.tcpNoDelayProperty());
+        config.tcpNoDelayProperty().addListener(markCustom);
+        addGridRow(grid, 6, "低延迟:", noDelayCheck);
+
+        // 阻塞 I/O 线程池独立于预设 (目录列举、删除、落盘都在这里执行)
+        TextField ioField = new TextField(String.valueOf(config.getIoThreads()));
+        ioField.setPrefWidth(70);
+        setupNumericField(ioField, config.ioThreadsProperty(), 0, 1024);
+        SimpleToggleSwitch virtualCheck = new SimpleToggleSwitch("使用虚拟线程");
+        virtualCheck.selectedProperty().bindBidirectional(config.virtualIoThreadsProperty());
+        HBox ioBox = new HBox(10, ioField, new Label("个 (0 = 自动)"), virtualCheck);
+        ioBox.setAlignment(Pos.CENTER_LEFT);
+        addGridRow(grid, 7, "文件 I/O 线程:", ioBox);
+
+        return grid;
+    }
+
+    private HBox createTuningField(javafx.beans.property.IntegerProperty property, long min, long max, String unit,
+                                   javafx.beans.InvalidationListener onChange) {
+        TextField field = new TextField(String.valueOf(property.get()));
+        field.setPrefWidth(70);
+        setupNumericField(field, property, min, max);
+        // 预设切换时同步回显
+        property.addListener((obs, old, val) -> field.setText(String.valueOf(val)));
+        property.addListener(onChange);
+        HBox box = new HBox(8, field, new Label(unit));
+        box.setAlignment(Pos.CENTER_LEFT);
+        return box;
+    }
+
     // ================= 3. 外观与显示 =================
     private Node createAppearanceSettings() {
         GridPane grid = createGrid();
@@ -408,7 +511,7 @@ public class SettingsView {
                 if (configFile.exists()) {
                     configFile.delete();
                 }
-                new File("users.properties").delete();
+                UserStore.getInstance().discard();
 
                 MessageUtils.showToast("设置已重置，程序即将关闭...");
                 new java.util.Timer().schedule(new java.util.TimerTask() {
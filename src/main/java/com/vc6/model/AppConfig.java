@@ -11,6 +11,20 @@ public class AppConfig {
     private final BooleanProperty allowUpload = new SimpleBooleanProperty(true);
     private final ObjectProperty<ServerMode> serverMode = new SimpleObjectProperty<>(ServerMode.STOPPED);
     private final StringProperty deviceName = new SimpleStringProperty(com.vc6.utils.IpUtils.getHostName());
+    private final StringProperty transport = new SimpleStringProperty("auto"); // auto / nio / epoll / io_uring
+
+    // --- 性能调优 (重启服务后生效) ---
+    private final StringProperty tuningPreset = new SimpleStringProperty(TuningPreset.DEFAULT.getKey());
+    private final IntegerProperty workerThreads = new SimpleIntegerProperty(0); // 0 = 自动
+    private final IntegerProperty sendBufferKb = new SimpleIntegerProperty(0); // 0 = 系统默认
+    private final IntegerProperty receiveBufferKb = new SimpleIntegerProperty(0);
+    private final IntegerProperty writeBufferLowKb = new SimpleIntegerProperty(32);
+    private final IntegerProperty writeBufferHighKb = new SimpleIntegerProperty(64);
+    private final IntegerProperty backlog = new SimpleIntegerProperty(128);
+    private final BooleanProperty pooledAllocator = new SimpleBooleanProperty(true);
+    private final BooleanProperty tcpNoDelay = new SimpleBooleanProperty(true);
+    private final IntegerProperty ioThreads = new SimpleIntegerProperty(0); // 阻塞 I/O 线程，0 = 自动
+    private final BooleanProperty virtualIoThreads = new SimpleBooleanProperty(false);
 
     // --- 网络与安全 ---
     private final StringProperty preferredNetworkInterface = new SimpleStringProperty("Auto"); // 优先网卡
@@ -59,6 +73,54 @@ public class AppConfig {
     public void setRootPath(String path) { this.rootPath.set(path); }
     public StringProperty rootPathProperty() { return rootPath; }
 
+    public String getTransport() { return transport.get(); }
+    public void setTransport(String val) { this.transport.set(val); }
+    public StringProperty transportProperty() { return transport; }
+
+    public String getTuningPreset() { return tuningPreset.get(); }
+    public void setTuningPreset(String val) { this.tuningPreset.set(val); }
+    public StringProperty tuningPresetProperty() { return tuningPreset; }
+
+    public int getWorkerThreads() { return workerThreads.get(); }
+    public void setWorkerThreads(int val) { this.workerThreads.set(val); }
+    public IntegerProperty workerThreadsProperty() { return workerThreads; }
+
+    public int getSendBufferKb() { return sendBufferKb.get(); }
+    public void setSendBufferKb(int val) { this.sendBufferKb.set(val); }
+    public IntegerProperty sendBufferKbProperty() { return sendBufferKb; }
+
+    public int getReceiveBufferKb() { return receiveBufferKb.get(); }
+    public void setReceiveBufferKb(int val) { this.receiveBufferKb.set(val); }
+    public IntegerProperty receiveBufferKbProperty() { return receiveBufferKb; }
+
+    public int getWriteBufferLowKb() { return writeBufferLowKb.get(); }
+    public void setWriteBufferLowKb(int val) { this.writeBufferLowKb.set(val); }
+    public IntegerProperty writeBufferLowKbProperty() { return writeBufferLowKb; }
+
+    public int getWriteBufferHighKb() { return writeBufferHighKb.get(); }
+    public void setWriteBufferHighKb(int val) { this.writeBufferHighKb.set(val); }
+    public IntegerProperty writeBufferHighKbProperty() { return writeBufferHighKb; }
+
+    public int getBacklog() { return backlog.get(); }
+    public void setBacklog(int val) { this.backlog.set(val); }
+    public IntegerProperty backlogProperty() { return backlog; }
+
+    public boolean isPooledAllocator() { return pooledAllocator.get(); }
+    public void setPooledAllocator(boolean val) { this.pooledAllocator.set(val); }
+    public BooleanProperty pooledAllocatorProperty() { return pooledAllocator; }
+
+    public boolean isTcpNoDelay() { return tcpNoDelay.get(); }
+    public void setTcpNoDelay(boolean val) { this.tcpNoDelay.set(val); }
+    public BooleanProperty tcpNoDelayProperty() { return tcpNoDelay; }
+
+    public int getIoThreads() { return ioThreads.get(); }
+    public void setIoThreads(int val) { this.ioThreads.set(val); }
+    public IntegerProperty ioThreadsProperty() { return ioThreads; }
+
+    public boolean isVirtualIoThreads() { return virtualIoThreads.get(); }
+    public void setVirtualIoThreads(boolean val) { this.virtualIoThreads.set(val); }
+    public BooleanProperty virtualIoThreadsProperty() { return virtualIoThreads; }
+
     public boolean isAllowUpload() { return allowUpload.get(); }
     public void setAllowUpload(boolean allow) { this.allowUpload.set(allow); }
     public BooleanProperty allowUploadProperty() { return allowUpload; }
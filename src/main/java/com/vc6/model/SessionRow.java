@@ -0,0 +1,47 @@
+package com.vc6.model;
+
+import javafx.beans.property.*;
+
+/**
+ * 会话在 TableView 中的一行 (只在 FX 线程中读写)
+ * 内容是某一时刻 UserSession 的快照，由 SessionListAdapter 按帧刷新。
+ */
+public final class SessionRow {
+    private final UserSession session;
+    private final StringProperty ip = new SimpleStringProperty();
+    private final StringProperty deviceName = new SimpleStringProperty();
+    private final StringProperty nickname = new SimpleStringProperty();
+    private final LongProperty lastActive = new SimpleLongProperty();
+    private final BooleanProperty valuable = new SimpleBooleanProperty(false);
+    private final ObjectProperty<UserTraffic> traffic = new SimpleObjectProperty<>(UserTraffic.EMPTY);
+
+    public SessionRow(UserSession session) {
+        this.session = session;
+        update();
+    }
+
+    /**
+     * 从会话拷贝最新的值 (值未变的属性不会触发监听)
+     */
+    public void update() {
+        ip.set(session.getIp());
+        deviceName.set(session.getDeviceName());
+        nickname.set(session.getNickname());
+        lastActive.set(session.getLastActive());
+        valuable.set(session.isValuable());
+        traffic.set(session.getTraffic());
+    }
+
+    public UserSession getSession() { return session; }
+    public String getUserId() { return session.getUserId(); }
+
+    public StringProperty ipProperty() { return ip; }
+    public StringProperty deviceNameProperty() { return deviceName; }
+    public StringProperty nicknameProperty() { return nickname; }
+    public LongProperty lastActiveProperty() { return lastActive; }
+    public BooleanProperty valuableProperty() { return valuable; }
+    public ObjectProperty<UserTraffic> trafficProperty() { return traffic; }
+
+    public String getNickname() { return nickname.get(); }
+    public boolean isValuable() { return valuable.get(); }
+}
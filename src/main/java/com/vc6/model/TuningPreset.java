@@ -0,0 +1,62 @@
+package com.vc6.model;
+
+/**
+ * 服务器性能调优预设
+ * 数值单位：线程数 (0 = 自动)、缓冲区 KB (0 = 系统默认)、backlog 连接数
+ */
+public enum TuningPreset {
+    DEFAULT("default", "默认", 0, 0, 0, 32, 64, 128, true, true),
+    MANY_CLIENTS("many_clients", "大量小客户端", 0, 64, 64, 32, 64, 1024, true, true),
+    BULK_TRANSFER("bulk_transfer", "少量大文件传输", Runtime.getRuntime().availableProcessors(), 1024, 1024, 512, 2048, 128, true, true),
+    CUSTOM("custom", "自定义", -1, -1, -1, -1, -1, -1, true, true);
+
+    private final String key;
+    private final String description;
+    private final int workerThreads;
+    private final int sendBufferKb;
+    private final int receiveBufferKb;
+    private final int writeLowKb;
+    private final int writeHighKb;
+    private final int backlog;
+    private final boolean pooledAllocator;
+    private final boolean tcpNoDelay;
+
+    TuningPreset(String key, String description, int workerThreads, int sendBufferKb, int receiveBufferKb,
+                 int writeLowKb, int writeHighKb, int backlog, boolean pooledAllocator, boolean tcpNoDelay) {
+        this.key = key;
+        this.description = description;
+        this.workerThreads = workerThreads;
+        this.sendBufferKb = sendBufferKb;
+        this.receiveBufferKb = receiveBufferKb;
+        this.writeLowKb = writeLowKb;
+        this.writeHighKb = writeHighKb;
+        this.backlog = backlog;
+        this.pooledAllocator = pooledAllocator;
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public String getKey() { return key; }
+    public String getDescription() { return description; }
+
+    public static TuningPreset fromKey(String key) {
+        for (TuningPreset p : values()) {
+            if (p.key.equalsIgnoreCase(key)) return p;
+        }
+        return CUSTOM;
+    }
+
+    /**
+     * 将预设数值写入配置 (CUSTOM 不做任何修改，保留用户手填的值)
+     */
+    public void applyTo(AppConfig config) {
+        if (this == CUSTOM) return;
+        config.setWorkerThreads(workerThreads);
+        config.setSendBufferKb(sendBufferKb);
+        config.setReceiveBufferKb(receiveBufferKb);
+        config.setWriteBufferLowKb(writeLowKb);
+        config.setWriteBufferHighKb(writeHighKb);
+        config.setBacklog(backlog);
+        config.setPooledAllocator(pooledAllocator);
+        config.setTcpNoDelay(tcpNoDelay);
+    }
+}
@@ -1,49 +1,84 @@
 package com.vc6.model;
 
-import javafx.beans.property.*;
+import java.util.Objects;
+import java.util.function.Consumer;
 
+/**
+ * 一个访问者的会话 (纯数据，可在任意线程读写)
+ * 字段变化时通知 SessionManager 登记的监听器，界面通过 SessionListAdapter 按帧批量同步，不直接绑定本对象。
+ */
 public class UserSession {
     private final String userId;
-    private final StringProperty ip = new SimpleStringProperty(); // 必须是 SimpleStringProperty
-    private final StringProperty deviceName = new SimpleStringProperty();
-    private final StringProperty nickname = new SimpleStringProperty();
-    private final LongProperty lastActive = new SimpleLongProperty();
-    private final BooleanProperty valuable = new SimpleBooleanProperty(false);
-    private boolean isValuable = false;
+    private volatile String ip;
+    private volatile String deviceName;
+    private volatile String nickname;
+    private volatile long lastActive;
+    private volatile boolean valuable = false;
+    private volatile UserTraffic traffic = UserTraffic.EMPTY;
+    private volatile Consumer<UserSession> changeListener;
 
     public UserSession(String userId, String ip, String deviceName) {
         this.userId = userId;
-        this.ip.set(ip);
-        this.deviceName.set(deviceName);
-        this.nickname.set(this.getDeviceName() +"_" + userId.substring(0, 4));
-        this.lastActive.set(System.currentTimeMillis());
+        this.ip = ip;
+        this.deviceName = deviceName;
+        this.nickname = deviceName + "_" + userId.substring(0, 4);
+        this.lastActive = System.currentTimeMillis();
     }
 
-    // --- IP 属性的方法 ---
-    public String getIp() { return ip.get(); }
-    public void setIp(String value) { this.ip.set(value); }
-    public StringProperty ipProperty() { return ip; }
+    /**
+     * 任一字段变化后在修改它的线程上回调，应尽快返回
+     */
+    public void setChangeListener(Consumer<UserSession> listener) { this.changeListener = listener; }
 
     // --- UserId (只读) ---
     public String getUserId() { return userId; }
 
-    // --- Nickname 属性的方法 ---
-    public String getNickname() { return nickname.get(); }
-    public void setNickname(String value) { this.nickname.set(value); }
-    public StringProperty nicknameProperty() { return nickname; }
-
-    // --- DeviceName 属性的方法 ---
-    public String getDeviceName() { return deviceName.get(); }
-    public void setDeviceName(String value) { this.deviceName.set(value); }
-    public StringProperty deviceNameProperty() { return deviceName; }
-
-    // --- LastActive 属性的方法 ---
-    public long getLastActive() { return lastActive.get(); }
-    public void setLastActive(long time) { this.lastActive.set(time); }
-    public void updateLastActive() { this.lastActive.set(System.currentTimeMillis()); }
-    public LongProperty lastActiveProperty() { return lastActive; }
-
-    public boolean isValuable() { return valuable.get(); }
-    public void setValuable(boolean value) { this.valuable.set(value); }
-    public BooleanProperty valuableProperty() { return valuable; }
-}
\ No newline at end of file
+    public String getIp() { return ip; }
+    public void setIp(String value) {
+        if (Objects.equals(ip, value)) return;
+        this.ip = value;
+        changed();
+    }
+
+    public String getNickname() { return nickname; }
+    public void setNickname(String value) {
+        if (Objects.equals(nickname, value)) return;
+        this.nickname = value;
+        changed();
+    }
+
+    public String getDeviceName() { return deviceName; }
+    public void setDeviceName(String value) {
+        if (Objects.equals(deviceName, value)) return;
+        this.deviceName = value;
+        changed();
+    }
+
+    public long getLastActive() { return lastActive; }
+    public void setLastActive(long time) {
+        if (lastActive == time) return;
+        this.lastActive = time;
+        changed();
+    }
+    public void updateLastActive() { setLastActive(System.currentTimeMillis()); }
+
+    public boolean isValuable() { return valuable; }
+    public void setValuable(boolean value) {
+        if (valuable == value) return;
+        this.valuable = value;
+        changed();
+    }
+
+    // --- 累计访问统计 ---
+    public UserTraffic getTraffic() { return traffic; }
+    public void setTraffic(UserTraffic value) {
+        if (Objects.equals(traffic, value)) return;
+        this.traffic = value;
+        changed();
+    }
+
+    private void changed() {
+        Consumer<UserSession> listener = changeListener;
+        if (listener != null) listener.accept(this);
+    }
+}
@@ -0,0 +1,25 @@
+package com.vc6.model;
+
+/**
+ * 单个用户的累计访问统计 (登录次数、上传/下载的文件数与字节数)
+ * @param lastSeen 最后一次有记录的活动时间
+ */
+public record UserTraffic(int logins, long uploads, long uploadBytes, long downloads, long downloadBytes, long lastSeen) {
+
+    public static final UserTraffic EMPTY = new UserTraffic(0, 0, 0, 0, 0, 0);
+
+    /**
+     * DOWNLOAD_PART 为从中间开始的分段下载 (断点续传、视频拖动)，只计字节不计次数
+     * 新增类型只能追加在末尾 (日志中按序号保存)
+     */
+    public enum Activity { LOGIN, UPLOAD, DOWNLOAD, DOWNLOAD_PART }
+
+    public UserTraffic plus(Activity activity, long bytes, long time) {
+        return switch (activity) {
+            case LOGIN -> new UserTraffic(logins + 1, uploads, uploadBytes, downloads, downloadBytes, time);
+            case UPLOAD -> new UserTraffic(logins, uploads + 1, uploadBytes + bytes, downloads, downloadBytes, time);
+            case DOWNLOAD -> new UserTraffic(logins, uploads, uploadBytes, downloads + 1, downloadBytes + bytes, time);
+            case DOWNLOAD_PART -> new UserTraffic(logins, uploads, uploadBytes, downloads, downloadBytes + bytes, time);
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package com.vc6.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 按需打开的分块文件输入 (用于无法 sendfile 的管道)
+ * ChunkedWriteHandler 只在 Channel 可写时才拉取下一块，因此每个连接的出站缓冲受写水位限制；
+ * 文件句柄直到真正开始发送才打开，发送完毕、连接断开或写失败时立即关闭。
+ */
+public class LazyChunkedFile implements ChunkedInput<HttpContent> {
+
+    private final File file;
+    private final long startOffset;
+    private final long endOffset;
+    private final int chunkSize;
+
+    private RandomAccessFile raf;
+    private long offset;
+    private boolean closed;
+
+    public LazyChunkedFile(File file, long offset, long length, int chunkSize) {
+        this.file = file;
+        this.startOffset = offset;
+        this.endOffset = offset + length;
+        this.chunkSize = chunkSize;
+        this.offset = offset;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return closed || offset >= endOffset;
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+
+    @Deprecated
+    @Override
+    public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+        if (isEndOfInput()) return null;
+        if (raf == null) {
+            raf = new RandomAccessFile(file, "r");
+        }
+
+        int size = (int) Math.min(chunkSize, endOffset - offset);
+        ByteBuf buf = allocator.heapBuffer(size);
+        boolean release = true;
+        try {
+            raf.seek(offset);
+            raf.readFully(buf.array(), buf.arrayOffset(), size);
+            buf.writerIndex(size);
+            offset += size;
+            release = false;
+        } finally {
+            if (release) buf.release();
+        }
+        // 最后一块读完立即释放句柄，不必等 ChunkedWriteHandler 回调 close()
+        if (offset >= endOffset) closeQuietly();
+        return new DefaultHttpContent(buf);
+    }
+
+    @Override
+    public long length() {
+        return endOffset - startOffset;
+    }
+
+    @Override
+    public long progress() {
+        return offset - startOffset;
+    }
+
+    private void closeQuietly() {
+        try {
+            if (raf != null) raf.close();
+        } catch (IOException ignored) {
+        }
+        raf = null;
+    }
+}
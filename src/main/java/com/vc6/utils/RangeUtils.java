@@ -0,0 +1,84 @@
+package com.vc6.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HTTP Range 请求头解析 (RFC 7233，仅支持 bytes 单位)
+ */
+public class RangeUtils {
+
+    // 防止恶意客户端用成百上千个小区间拖垮服务器
+    private static final int MAX_RANGES = 32;
+
+    public record ByteRange(long start, long end) {
+        public long length() { return end - start + 1; }
+    }
+
+    /**
+     * 重叠或相邻的区间会按起点排序后合并 (RFC 7233 允许)，返回的区间互不重叠，总长度不会超过文件长度
+     * @return null 表示没有 Range 头或格式无法识别 (按完整文件返回)；
+     *         空列表表示所有区间都无法满足 (应返回 416)
+     */
+    public static List<ByteRange> parse(String header, long fileLength) {
+        if (header == null) return null;
+        header = header.trim();
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return null;
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) return null;
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start, end;
+                if (first.isEmpty()) {
+                    // 后缀区间 "-500"：最后 500 字节
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) continue;
+                    start = Math.max(0, fileLength - suffix);
+                    end = fileLength - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    if (last.isEmpty()) {
+                        end = fileLength - 1;
+                    } else {
+                        long requestedEnd = Long.parseLong(last);
+                        if (requestedEnd < start) return null; // 语法无效，忽略整个 Range 头
+                        end = Math.min(requestedEnd, fileLength - 1);
+                    }
+                }
+                if (start < 0 || start >= fileLength || start > end) continue; // 无法满足的区间直接跳过
+                ranges.add(new ByteRange(start, end));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    // "bytes=0-,0-,0-" 这类请求合并后只剩一个区间，不会把同一段数据重复发送多遍
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) return ranges;
+        ranges.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(ranges.size());
+        ByteRange cur = ranges.getFirst();
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.start() <= cur.end() + 1) {
+                cur = new ByteRange(cur.start(), Math.max(cur.end(), next.end()));
+            } else {
+                merged.add(cur);
+                cur = next;
+            }
+        }
+        merged.add(cur);
+        return merged;
+    }
+}
@@ -5,7 +5,11 @@ module com.ccb.javafx {
     requires javafx.swing;
     requires atlantafx.base;
     requires io.netty.transport;
+    requires io.netty.transport.classes.epoll;
+    requires io.netty.transport.classes.io_uring;
+    requires io.netty.codec;
     requires io.netty.codec.http;
+    requires io.netty.codec.http2;
     requires io.netty.handler;
     requires io.netty.buffer;
     requires io.netty.common;
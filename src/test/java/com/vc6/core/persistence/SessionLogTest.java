@@ -0,0 +1,185 @@
+package com.vc6.core.persistence;
+
+import com.vc6.core.persistence.SessionLog.UserRecord;
+import com.vc6.model.UserTraffic;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionLogTest {
+
+    private static final UserRecord ALICE = new UserRecord("alice001", "Alice", "10.0.0.2", "Android", 1000);
+    private static final UserRecord BOB = new UserRecord("bob00001", "鲍勃", "10.0.0.3", "Windows", 2000);
+
+    @TempDir
+    Path dir;
+
+    private Path file() {
+        return dir.resolve("sessions.log");
+    }
+
+    @Test
+    void missingFileReplaysEmpty() {
+        SessionLog.Snapshot s = new SessionLog(file()).replay();
+        assertTrue(s.users().isEmpty());
+        assertTrue(s.traffic().isEmpty());
+        assertEquals(0, s.records());
+    }
+
+    @Test
+    void appendThenReplay() throws IOException {
+        SessionLog log = new SessionLog(file());
+        log.appendUser(ALICE);
+        log.appendUser(BOB);
+        log.appendUser(new UserRecord("alice001", "Alice2", "10.0.0.9", "Android", 3000));
+        log.appendActivity("alice001", UserTraffic.Activity.UPLOAD, 5000, 100);
+        log.appendActivity("alice001", UserTraffic.Activity.DOWNLOAD, 6000, 40);
+        log.appendRemove("bob00001");
+        log.close();
+
+        SessionLog.Snapshot s = new SessionLog(file()).replay();
+        assertEquals(6, s.records());
+        assertEquals(List.of("alice001"), List.copyOf(s.users().keySet()));
+        assertEquals("Alice2", s.users().get("alice001").name());
+        assertEquals(new UserTraffic(0, 1, 100, 1, 40, 6000), s.traffic().get("alice001"));
+    }
+
+    @Test
+    void reopenedLogAppendsAfterExistingRecords() throws IOException {
+        SessionLog first = new SessionLog(file());
+        first.appendUser(ALICE);
+        first.close();
+
+        SessionLog second = new SessionLog(file());
+        assertEquals(1, second.replay().records());
+        second.appendUser(BOB);
+        second.close();
+
+        SessionLog.Snapshot s = new SessionLog(file()).replay();
+        assertEquals(2, s.records());
+        assertEquals(BOB, s.users().get("bob00001"));
+    }
+
+    @Test
+    void tornLastRecordIsTruncated() throws IOException {
+        SessionLog log = new SessionLog(file());
+        log.appendUser(ALICE);
+        log.flush();
+        long afterFirst = Files.size(file());
+        log.appendUser(BOB);
+        log.close();
+        chop(file(), 3);
+
+        SessionLog reopened = new SessionLog(file());
+        SessionLog.Snapshot s = reopened.replay();
+        assertEquals(1, s.records());
+        assertEquals(Map.of("alice001", ALICE), s.users());
+        assertEquals(afterFirst, Files.size(file()));
+
+        // 截断后追加的记录接在完整记录之后，下次仍能读回
+        reopened.appendUser(BOB);
+        reopened.close();
+        assertEquals(2, new SessionLog(file()).replay().records());
+    }
+
+    @Test
+    void crcMismatchDropsThatRecordAndEverythingAfter() throws IOException {
+        SessionLog log = new SessionLog(file());
+        log.appendUser(ALICE);
+        log.flush();
+        long afterFirst = Files.size(file());
+        log.appendUser(BOB);
+        log.flush();
+        long afterSecond = Files.size(file());
+        log.appendActivity("alice001", UserTraffic.Activity.LOGIN, 7000, 0);
+        log.close();
+        flipByte(file(), afterSecond - 1); // 第二条记录的 CRC
+
+        SessionLog.Snapshot s = new SessionLog(file()).replay();
+        assertEquals(1, s.records());
+        assertEquals(Map.of("alice001", ALICE), s.users());
+        assertTrue(s.traffic().isEmpty());
+        assertEquals(afterFirst, Files.size(file()));
+    }
+
+    @Test
+    void unknownHeaderIsMovedAside() throws IOException {
+        Files.writeString(file(), "not a session log");
+
+        SessionLog.Snapshot s = new SessionLog(file()).replay();
+        assertTrue(s.users().isEmpty());
+        assertEquals(0, s.records());
+        assertFalse(Files.exists(file()));
+        assertEquals("not a session log", Files.readString(dir.resolve("sessions.log.bad")));
+    }
+
+    @Test
+    void rewriteThenReplayKeepsState() throws IOException {
+        SessionLog log = new SessionLog(file());
+        for (int i = 0; i < 50; i++) {
+            log.appendUser(new UserRecord("alice001", "Alice" + i, "10.0.0.2", "Android", i));
+            log.appendActivity("guest001", UserTraffic.Activity.DOWNLOAD, 100 + i, 10);
+        }
+        log.appendUser(BOB);
+        log.close();
+        SessionLog.Snapshot before = new SessionLog(file()).replay();
+        long sizeBefore = Files.size(file());
+
+        SessionLog compacted = new SessionLog(file());
+        compacted.rewrite(before.users().values(), new HashMap<>(before.traffic()));
+        compacted.close();
+
+        SessionLog.Snapshot after = new SessionLog(file()).replay();
+        assertEquals(before.users(), after.users());
+        assertEquals(before.traffic(), after.traffic());
+        assertEquals(before.users().size() + before.traffic().size(), after.records());
+        assertTrue(Files.size(file()) < sizeBefore);
+        assertFalse(Files.exists(dir.resolve("sessions.log.tmp")));
+    }
+
+    @Test
+    void oversizedRecordIsRejectedBeforeWriting() throws IOException {
+        SessionLog log = new SessionLog(file());
+        log.appendUser(ALICE);
+        log.flush();
+        long size = Files.size(file());
+
+        // 单个字段在 writeUTF 的上限内，但整条记录超过重放的上限
+        UserRecord huge = new UserRecord("huge0001", "n".repeat(60_000), "ip", "d".repeat(10_000), 1);
+        assertThrows(IOException.class, () -> log.appendUser(huge));
+        // 单个字段超过 writeUTF 的上限
+        UserRecord tooLong = new UserRecord("huge0002", "名".repeat(30_000), "ip", "dev", 1);
+        assertThrows(IOException.class, () -> log.appendUser(tooLong));
+        log.flush();
+        assertEquals(size, Files.size(file()));
+
+        log.appendUser(BOB);
+        log.close();
+        SessionLog.Snapshot s = new SessionLog(file()).replay();
+        assertEquals(Map.of("alice001", ALICE, "bob00001", BOB), s.users());
+    }
+
+    private static void chop(Path file, int bytes) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - bytes);
+        }
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+    }
+}
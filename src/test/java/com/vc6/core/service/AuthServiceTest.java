@@ -0,0 +1,171 @@
+package com.vc6.core.service;
+
+import com.vc6.model.AppConfig;
+import com.vc6.model.UserSession;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthServiceTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private final AuthService auth = new AuthService();
+    private final SessionTokens tokens = SessionTokens.getInstance();
+    private final List<String> setCookies = new ArrayList<>();
+    private final FileService out = new FileService() {
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaderNames.SET_COOKIE.contentEqualsIgnoreCase(name)) setCookies.add(value);
+        }
+    };
+    private ChannelHandlerContext ctx;
+    private String savedPin;
+
+    @BeforeEach
+    void setUp() {
+        savedPin = AppConfig.getInstance().getRemotePin();
+        AppConfig.getInstance().setRemotePin("4321");
+    }
+
+    @AfterEach
+    void restorePin() {
+        AppConfig.getInstance().setRemotePin(savedPin);
+    }
+
+    @Test
+    void validTokenIdentifiesUserWithoutReissue() {
+        String t = tokens.issue("tok00001", SessionTokens.LEVEL_GUEST, 0);
+
+        UserSession s = identify("LAN_LINKER_TOKEN=" + t);
+        assertEquals("tok00001", s.getUserId());
+        assertFalse(authed());
+        assertTrue(setCookies.isEmpty());
+    }
+
+    @Test
+    void loginTokenIsAuthed() {
+        String t = tokens.issue("tok00002", SessionTokens.LEVEL_USER, System.currentTimeMillis() + HOUR_MS);
+
+        assertEquals("tok00002", identify("other=1; LAN_LINKER_TOKEN=" + t).getUserId());
+        assertTrue(authed());
+    }
+
+    @Test
+    void quotedCookieValueIsAccepted() {
+        String t = tokens.issue("tok00003", SessionTokens.LEVEL_GUEST, 0);
+
+        assertEquals("tok00003", identify("LAN_LINKER_TOKEN=\"" + t + "\"").getUserId());
+    }
+
+    @Test
+    void firstOfDuplicateCookiesWins() {
+        String first = tokens.issue("tok00004", SessionTokens.LEVEL_GUEST, 0);
+        String second = tokens.issue("tok00005", SessionTokens.LEVEL_GUEST, 0);
+
+        assertEquals("tok00004", identify("LAN_LINKER_TOKEN=" + first + "; LAN_LINKER_TOKEN=" + second).getUserId());
+    }
+
+    @Test
+    void similarCookieNamesAreIgnored() {
+        String t = tokens.issue("tok00006", SessionTokens.LEVEL_GUEST, 0);
+        String fake = tokens.issue("tok00007", SessionTokens.LEVEL_GUEST, 0);
+
+        UserSession s = identify("X_LAN_LINKER_TOKEN=" + fake + "; LAN_LINKER_TOKENX=" + fake + "; LAN_LINKER_TOKEN=" + t);
+        assertEquals("tok00006", s.getUserId());
+    }
+
+    @Test
+    void leftoverLegacyCookiesAreClearedWhenTokenIsValid() {
+        String t = tokens.issue("tok00008", SessionTokens.LEVEL_GUEST, 0);
+
+        UserSession s = identify("LAN_LINKER_TOKEN=" + t + "; LAN_LINKER_UID=legacy99; LAN_LINKER_AUTH=4321");
+        assertEquals("tok00008", s.getUserId()); // 令牌优先于旧 Cookie
+        assertFalse(authed());
+        assertTrue(hasExpired("LAN_LINKER_UID"));
+        assertTrue(hasExpired("LAN_LINKER_AUTH"));
+        assertFalse(issuedToken());
+    }
+
+    @Test
+    void forgedLegacyUidIsNotHonored() {
+        UserSession s = identify("LAN_LINKER_UID=forged01");
+        assertNotEquals("forged01", s.getUserId());
+        assertFalse(authed());
+        assertTrue(hasExpired("LAN_LINKER_UID"));
+    }
+
+    @Test
+    void legacyUidWithWrongPinIsNotHonored() {
+        UserSession s = identify("LAN_LINKER_UID=forged02; LAN_LINKER_AUTH=0000");
+        assertNotEquals("forged02", s.getUserId());
+        assertFalse(authed());
+        assertTrue(hasExpired("LAN_LINKER_UID"));
+        assertTrue(hasExpired("LAN_LINKER_AUTH"));
+    }
+
+    @Test
+    void legacyUidWithCorrectPinIsExchangedForToken() {
+        UserSession s = identify("LAN_LINKER_UID=legacy01; LAN_LINKER_AUTH=4321");
+        assertEquals("legacy01", s.getUserId());
+        assertTrue(authed());
+        assertTrue(issuedToken());
+        assertTrue(hasExpired("LAN_LINKER_UID"));
+        assertTrue(hasExpired("LAN_LINKER_AUTH"));
+    }
+
+    @Test
+    void boundsFromPreviousRequestAreNotReused() {
+        // 同一个 AuthService 处理连接上的多个请求，上一次的 AUTH 位置不能带到这一次
+        identify("LAN_LINKER_AUTH=4321; padding=xxxxxxxxxxxxxxxxxxxxxxxx");
+        UserSession s = identify("LAN_LINKER_UID=forged03");
+        assertNotEquals("forged03", s.getUserId());
+        assertFalse(authed());
+    }
+
+    @Test
+    void malformedCookieHeaderDoesNotThrow() {
+        assertNotNull(identify(";;; =; LAN_LINKER_UID; LAN_LINKER_AUTH=; LAN_LINKER_TOKEN=\""));
+        assertFalse(authed());
+    }
+
+    @Test
+    void pinComparison() {
+        assertTrue(auth.verifyPin("4321"));
+        assertFalse(auth.verifyPin("432"));
+        assertFalse(auth.verifyPin("43210"));
+        assertFalse(auth.verifyPin("1234"));
+        assertFalse(auth.verifyPin(""));
+        assertFalse(auth.verifyPin(null));
+    }
+
+    private UserSession identify(String cookie) {
+        setCookies.clear();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+        HttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        if (cookie != null) req.headers().set(HttpHeaderNames.COOKIE, cookie);
+        return auth.identifyUser(ctx, req, out);
+    }
+
+    private boolean authed() {
+        return Boolean.TRUE.equals(ctx.channel().attr(AuthService.AUTHED_KEY).get());
+    }
+
+    private boolean hasExpired(String name) {
+        return setCookies.stream().anyMatch(c -> c.startsWith(name + "=;") && c.contains("Max-Age=0"));
+    }
+
+    private boolean issuedToken() {
+        return setCookies.stream().anyMatch(c -> c.startsWith("LAN_LINKER_TOKEN=") && !c.startsWith("LAN_LINKER_TOKEN=;"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.vc6.core.service;
+
+import com.vc6.model.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTokensTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private final SessionTokens tokens = SessionTokens.getInstance();
+    private String savedPin;
+
+    @BeforeEach
+    void setPin() {
+        savedPin = AppConfig.getInstance().getRemotePin();
+        AppConfig.getInstance().setRemotePin("1111");
+    }
+
+    @AfterEach
+    void restorePin() {
+        AppConfig.getInstance().setRemotePin(savedPin);
+    }
+
+    @Test
+    void guestTokenRoundTrip() {
+        String t = tokens.issue("abcd1234", SessionTokens.LEVEL_GUEST, 0);
+        assertEquals(44, t.length());
+
+        SessionTokens.Reader r = tokens.verify(t, 0, t.length());
+        assertNotNull(r);
+        assertEquals("abcd1234", r.uid());
+        assertFalse(r.authed());
+    }
+
+    @Test
+    void loginTokenRoundTripInsideLargerString() {
+        String t = tokens.issue("user-001", SessionTokens.LEVEL_USER, System.currentTimeMillis() + HOUR_MS);
+        String header = "a=b; LAN_LINKER_TOKEN=" + t + "; c=d";
+        int from = header.indexOf(t);
+
+        SessionTokens.Reader r = tokens.verify(header, from, from + t.length());
+        assertNotNull(r);
+        assertEquals("user-001", r.uid());
+        assertTrue(r.authed());
+    }
+
+    @Test
+    void tamperedBodyIsRejected() {
+        String t = tokens.issue("abcd1234", SessionTokens.LEVEL_GUEST, 0);
+        String forged = flip(t, 5); // UID 所在位置
+        assertNull(tokens.verify(forged, 0, forged.length()));
+    }
+
+    @Test
+    void tamperedMacIsRejected() {
+        String t = tokens.issue("abcd1234", SessionTokens.LEVEL_USER, System.currentTimeMillis() + HOUR_MS);
+        String forged = flip(t, t.length() - 2);
+        assertNull(tokens.verify(forged, 0, forged.length()));
+    }
+
+    @Test
+    void upgradedLevelWithoutNewMacIsRejected() {
+        String guest = tokens.issue("abcd1234", SessionTokens.LEVEL_GUEST, 0);
+        // 首字节 = 版本 << 4 | 级别，改成登录级别而签名不变
+        byte[] raw = Base64.getUrlDecoder().decode(guest);
+        raw[0] |= SessionTokens.LEVEL_USER;
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        assertNull(tokens.verify(forged, 0, forged.length()));
+    }
+
+    @Test
+    void malformedInputIsRejected() {
+        String t = tokens.issue("abcd1234", SessionTokens.LEVEL_GUEST, 0);
+        assertNull(tokens.verify(t, 0, t.length() - 1));
+        assertNull(tokens.verify(t.substring(0, 43) + "=", 0, 44));
+        assertNull(tokens.verify("é".repeat(44), 0, 44));
+    }
+
+    @Test
+    void expiredLoginKeepsUidButIsNotAuthed() {
+        String t = tokens.issue("abcd1234", SessionTokens.LEVEL_USER, System.currentTimeMillis() - 1000);
+
+        SessionTokens.Reader r = tokens.verify(t, 0, t.length());
+        assertNotNull(r);
+        assertEquals("abcd1234", r.uid());
+        assertFalse(r.authed());
+    }
+
+    @Test
+    void pinChangeRevokesLoginButKeepsUid() {
+        String t = tokens.issue("abcd1234", SessionTokens.LEVEL_USER, System.currentTimeMillis() + HOUR_MS);
+        assertTrue(tokens.verify(t, 0, t.length()).authed());
+
+        AppConfig.getInstance().setRemotePin("2222");
+        SessionTokens.Reader r = tokens.verify(t, 0, t.length());
+        assertNotNull(r);
+        assertEquals("abcd1234", r.uid());
+        assertFalse(r.authed());
+
+        // 改回原来的 PIN，令牌重新有效
+        AppConfig.getInstance().setRemotePin("1111");
+        assertTrue(tokens.verify(t, 0, t.length()).authed());
+    }
+
+    @Test
+    void uidValidation() {
+        assertTrue(SessionTokens.isValidUid("abcd1234"));
+        assertFalse(SessionTokens.isValidUid(null));
+        assertFalse(SessionTokens.isValidUid("abc"));
+        assertFalse(SessionTokens.isValidUid("abcd123;"));
+        assertFalse(SessionTokens.isValidUid("abcd 123"));
+        assertFalse(SessionTokens.isValidUid("abcd123é"));
+        assertThrows(IllegalArgumentException.class, () -> tokens.issue("bad uid", SessionTokens.LEVEL_GUEST, 0));
+    }
+
+    private static String flip(String token, int index) {
+        char[] c = token.toCharArray();
+        c[index] = c[index] == 'A' ? 'B' : 'A';
+        return new String(c);
+    }
+}
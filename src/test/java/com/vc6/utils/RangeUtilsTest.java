@@ -0,0 +1,100 @@
+package com.vc6.utils;
+
+import com.vc6.utils.RangeUtils.ByteRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeUtilsTest {
+
+    private static final long LEN = 10_000;
+
+    @Test
+    void noHeaderOrOtherUnitMeansFullFile() {
+        assertNull(RangeUtils.parse(null, LEN));
+        assertNull(RangeUtils.parse("items=0-5", LEN));
+        assertNull(RangeUtils.parse("bytes=abc", LEN));
+        assertNull(RangeUtils.parse("bytes=1-x", LEN));
+    }
+
+    @Test
+    void singleClosedRange() {
+        assertEquals(List.of(new ByteRange(0, 499)), RangeUtils.parse("bytes=0-499", LEN));
+        assertEquals(List.of(new ByteRange(100, 100)), RangeUtils.parse(" Bytes=100-100", LEN)); // 单位不区分大小写
+    }
+
+    @Test
+    void suffixRange() {
+        assertEquals(List.of(new ByteRange(9500, 9999)), RangeUtils.parse("bytes=-500", LEN));
+        // 后缀比文件还长时取整个文件
+        assertEquals(List.of(new ByteRange(0, 9999)), RangeUtils.parse("bytes=-20000", LEN));
+    }
+
+    @Test
+    void zeroSuffixIsUnsatisfiable() {
+        assertEquals(List.of(), RangeUtils.parse("bytes=-0", LEN));
+    }
+
+    @Test
+    void openEndedRange() {
+        assertEquals(List.of(new ByteRange(9000, 9999)), RangeUtils.parse("bytes=9000-", LEN));
+    }
+
+    @Test
+    void endPastEofIsClamped() {
+        assertEquals(List.of(new ByteRange(9000, 9999)), RangeUtils.parse("bytes=9000-50000", LEN));
+    }
+
+    @Test
+    void endBeforeStartIgnoresHeader() {
+        assertNull(RangeUtils.parse("bytes=500-100", LEN));
+        assertNull(RangeUtils.parse("bytes=0-10,500-100", LEN));
+    }
+
+    @Test
+    void overlappingRangesAreCoalesced() {
+        assertEquals(List.of(new ByteRange(0, 9999)), RangeUtils.parse("bytes=0-,0-,0-,0-", LEN));
+        assertEquals(List.of(new ByteRange(0, 799)), RangeUtils.parse("bytes=500-799,0-600", LEN));
+    }
+
+    @Test
+    void adjacentRangesAreCoalesced() {
+        assertEquals(List.of(new ByteRange(0, 999)), RangeUtils.parse("bytes=500-999,0-499", LEN));
+    }
+
+    @Test
+    void disjointRangesAreSortedAndKept() {
+        List<ByteRange> ranges = RangeUtils.parse("bytes=2000-2099,0-99,-100", LEN);
+        assertEquals(List.of(new ByteRange(0, 99), new ByteRange(2000, 2099), new ByteRange(9900, 9999)), ranges);
+    }
+
+    @Test
+    void coalescedTotalNeverExceedsFileLength() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i < 32; i++) header.append(i == 0 ? "" : ",").append(i * 100).append('-');
+        List<ByteRange> ranges = RangeUtils.parse(header.toString(), LEN);
+        assertEquals(List.of(new ByteRange(0, 9999)), ranges);
+        assertTrue(ranges.stream().mapToLong(ByteRange::length).sum() <= LEN);
+    }
+
+    @Test
+    void moreThan32RangesIgnoresHeader() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i < 33; i++) header.append(i == 0 ? "" : ",").append(i * 10).append('-').append(i * 10 + 1);
+        assertNull(RangeUtils.parse(header.toString(), LEN));
+    }
+
+    @Test
+    void unsatisfiableRangesAreSkipped() {
+        assertEquals(List.of(new ByteRange(0, 9)), RangeUtils.parse("bytes=20000-,0-9", LEN));
+    }
+
+    @Test
+    void allUnsatisfiableGivesEmptyList() {
+        assertEquals(List.of(), RangeUtils.parse("bytes=10000-", LEN));
+        assertEquals(List.of(), RangeUtils.parse("bytes=20000-30000,-0", LEN));
+        assertEquals(List.of(), RangeUtils.parse("bytes=0-", 0));
+    }
+}